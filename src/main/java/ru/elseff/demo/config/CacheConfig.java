@@ -0,0 +1,10 @@
+package ru.elseff.demo.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String PRODUCTS_CACHE = "products";
+}
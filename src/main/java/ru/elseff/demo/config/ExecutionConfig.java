@@ -0,0 +1,147 @@
+package ru.elseff.demo.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.elseff.demo.web.api.modules.product.controller.ProductController;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in execution modes for requests waiting on the database, chosen with {@code app.execution.mode}:
+ * <ul>
+ *     <li>{@code platform}, the default: every request holds one of the {@code server.tomcat.threads.max}
+ *     Tomcat threads until it is answered.</li>
+ *     <li>{@code bounded}: {@link ProductController} endpoints run as async requests on a pool of
+ *     {@code app.execution.pool-size} threads, sized like the connection pool. The Tomcat thread is
+ *     released as soon as the arguments are read, requests beyond the pool wait in its queue without
+ *     holding a thread or a connection. The queue itself is bounded by the concurrency limit in front.</li>
+ *     <li>{@code virtual-threads}: Tomcat and the async request processing run every request on its own
+ *     virtual thread, and the connection pool becomes the only limit on concurrent database work. Needs
+ *     Java 21, on older runtimes the application does not start.</li>
+ * </ul>
+ */
+@Configuration
+public class ExecutionConfig {
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.execution.mode", havingValue = "bounded")
+    static class BoundedExecutionConfig {
+
+        @Value("${app.execution.pool-size:10}")
+        private int poolSize;
+
+        @Bean
+        public ThreadPoolTaskExecutor productRequestExecutor() {
+            ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+            executor.setCorePoolSize(poolSize);
+            executor.setMaxPoolSize(poolSize);
+            executor.setThreadNamePrefix("product-request-");
+            return executor;
+        }
+
+        @Bean
+        public WebMvcRegistrations boundedExecutionRegistrations(ThreadPoolTaskExecutor productRequestExecutor) {
+            return new WebMvcRegistrations() {
+                @Override
+                public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                    return new BoundedHandlerAdapter(productRequestExecutor);
+                }
+            };
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(name = "app.execution.mode", havingValue = "virtual-threads")
+    static class VirtualThreadsConfig implements WebMvcConfigurer {
+
+        private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+        @Bean
+        public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadsProtocolHandlerCustomizer() {
+            return protocolHandler -> protocolHandler.setExecutor(executor);
+        }
+
+        @Override
+        public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+            configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+        }
+
+        /**
+         * Looked up reflectively, so the application still compiles on Java 17.
+         */
+        private static ExecutorService newVirtualThreadPerTaskExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("app.execution.mode=virtual-threads needs Java 21, running on Java "
+                        + Runtime.version().feature(), e);
+            }
+        }
+    }
+
+    /**
+     * Hands the invocation of {@link ProductController} endpoints to the executor once the arguments are
+     * resolved. Endpoints that are asynchronous already, such as the change feed and the streams, are
+     * invoked as usual.
+     */
+    static class BoundedHandlerAdapter extends RequestMappingHandlerAdapter {
+
+        private final AsyncTaskExecutor executor;
+
+        BoundedHandlerAdapter(AsyncTaskExecutor executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        protected ServletInvocableHandlerMethod createInvocableHandlerMethod(HandlerMethod handlerMethod) {
+            if (!ProductController.class.isAssignableFrom(handlerMethod.getBeanType()) || isAsync(handlerMethod)) {
+                return super.createInvocableHandlerMethod(handlerMethod);
+            }
+            return new ServletInvocableHandlerMethod(handlerMethod) {
+                @Override
+                public Object invokeForRequest(NativeWebRequest request, ModelAndViewContainer mavContainer,
+                                               Object... providedArgs) throws Exception {
+                    Object[] args = getMethodArgumentValues(request, mavContainer, providedArgs);
+                    HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+                    return new WebAsyncTask<>(null, executor, () -> {
+                        Object result = doInvoke(args);
+                        // void endpoints have their @ResponseStatus set on the response already
+                        return result != null ? result : ResponseEntity.status(response.getStatus()).build();
+                    });
+                }
+            };
+        }
+
+        private static boolean isAsync(HandlerMethod handlerMethod) {
+            ResolvableType returnType = ResolvableType.forMethodParameter(handlerMethod.getReturnType());
+            Class<?> type = returnType.toClass();
+            if (HttpEntity.class.isAssignableFrom(type)) {
+                type = returnType.getGeneric().toClass();
+            }
+            return DeferredResult.class.isAssignableFrom(type) || StreamingResponseBody.class.isAssignableFrom(type);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.elseff.demo.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.elseff.demo.persistense.Product;
+
+import javax.cache.CacheManager;
+import javax.cache.spi.CachingProvider;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Regions of the Hibernate second-level cache, held in Caffeine behind JCache and sized from
+ * {@code app.l2-cache}. Every instance has its own regions, so the time to live bounds how long
+ * a change made through another instance can go unseen.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.cache.use_second_level_cache", havingValue = "true")
+public class HibernateCacheConfig {
+
+    public static final String PRODUCT_REGION = Product.class.getName();
+
+    public static final String PRODUCT_NATURAL_ID_REGION = PRODUCT_REGION + "##NaturalId";
+
+    public static final String QUERY_RESULTS_REGION = "default-query-results-region";
+
+    public static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${app.l2-cache.product.maximum-size:10000}")
+    private long productMaximumSize;
+
+    @Value("${app.l2-cache.product.time-to-live:60s}")
+    private Duration productTimeToLive;
+
+    @Value("${app.l2-cache.query-results.maximum-size:1000}")
+    private long queryResultsMaximumSize;
+
+    @Value("${app.l2-cache.query-results.time-to-live:5s}")
+    private Duration queryResultsTimeToLive;
+
+    /**
+     * A provider of its own rather than the JVM-wide default, so every application context
+     * gets fresh regions.
+     */
+    @Bean(destroyMethod = "close")
+    public CachingProvider hibernateCachingProvider() {
+        return new CaffeineCachingProvider();
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheManagerCustomizer(CachingProvider hibernateCachingProvider) {
+        CacheManager cacheManager = hibernateCachingProvider.getCacheManager(
+                hibernateCachingProvider.getDefaultURI(), getClass().getClassLoader());
+        createRegion(cacheManager, PRODUCT_REGION, productMaximumSize, productTimeToLive);
+        createRegion(cacheManager, PRODUCT_NATURAL_ID_REGION, productMaximumSize, productTimeToLive);
+        createRegion(cacheManager, QUERY_RESULTS_REGION, queryResultsMaximumSize, queryResultsTimeToLive);
+        // one entry per table, evicting them would make cached query results look fresh
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, new CaffeineConfiguration<>());
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maximumSize, Duration timeToLive) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(timeToLive.toNanos()));
+        cacheManager.createCache(name, configuration);
+    }
+}
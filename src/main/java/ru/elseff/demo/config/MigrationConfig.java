@@ -0,0 +1,38 @@
+package ru.elseff.demo.config;
+
+import org.flywaydb.core.api.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Contract migrations drop what instances of the previous release still read or write, so they are
+ * only resolved with {@code app.migration.contract=true}, set once no such instance is running. By
+ * then later expand migrations are usually applied already, so the contract ones run out of order.
+ * Once applied they have to stay resolvable, the setting is not turned off again.
+ */
+@Configuration
+public class MigrationConfig {
+
+    public static final String CONTRACT_LOCATION = "classpath:db/contract";
+
+    @Value("${app.migration.contract:false}")
+    private boolean contract;
+
+    @Bean
+    public FlywayConfigurationCustomizer contractMigrationsCustomizer() {
+        return configuration -> {
+            if (contract) {
+                List<Location> locations = new ArrayList<>(Arrays.asList(configuration.getLocations()));
+                locations.add(new Location(CONTRACT_LOCATION));
+                configuration.locations(locations.toArray(Location[]::new))
+                        .outOfOrder(true);
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package ru.elseff.demo.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.elseff.demo.persistense.routing.ReadYourWrites;
+import ru.elseff.demo.persistense.routing.ReplicaRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the replicas listed in {@code app.read-replicas.urls}, see
+ * {@link ReplicaRoutingDataSource}. Without replicas the auto-configured data source is used as is.
+ * Flyway, Hibernate's boot and everything outside a read-only transaction get the primary.
+ */
+@Configuration
+@ConditionalOnExpression("!'${app.read-replicas.urls:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Value("${app.read-replicas.urls}")
+    private List<String> urls;
+
+    @Value("${app.read-replicas.health-check-interval:1000}")
+    private long healthCheckIntervalMillis;
+
+    @Value("${app.read-replicas.connection-timeout:1s}")
+    private Duration connectionTimeout;
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             ReadYourWrites readYourWrites) {
+        // a replica stays available for the window minus its lag, checks further apart would let it drop out in between
+        if (healthCheckIntervalMillis + connectionTimeout.toMillis() >= readYourWrites.getWindow().toMillis()) {
+            throw new IllegalStateException("app.read-replicas.health-check-interval plus connection-timeout " +
+                    "must be shorter than app.read-replicas.read-your-writes-window");
+        }
+        List<ReplicaRoutingDataSource.Replica> replicas = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            HikariDataSource replica = new HikariDataSource(replicaConfig(primaryDataSource, url.trim(),
+                    "replica-" + (replicas.size() + 1)));
+            replicas.add(new ReplicaRoutingDataSource.Replica(replica.getPoolName(), replica,
+                    () -> replica.getHikariPoolMXBean().getActiveConnections()));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, readYourWrites);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * The primary's pool settings and credentials with read-only connections. The pool starts even
+     * when the replica is down, the routing skips it until it answers.
+     */
+    private HikariConfig replicaConfig(HikariDataSource primaryDataSource, String url, String poolName) {
+        HikariConfig config = new HikariConfig();
+        primaryDataSource.copyStateTo(config);
+        config.setJdbcUrl(url);
+        config.setPoolName(poolName);
+        config.setReadOnly(true);
+        config.setConnectionTimeout(connectionTimeout.toMillis());
+        config.setInitializationFailTimeout(-1);
+        return config;
+    }
+}
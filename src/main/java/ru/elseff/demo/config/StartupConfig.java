@@ -0,0 +1,27 @@
+package ru.elseff.demo.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Slf4j
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Training run of the class data sharing archive built by the {@code Dockerfile}: loads the
+     * classes of a full startup, then exits before the application-ready work talks to the database.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.startup.exit-after-start", havingValue = "true")
+    public ApplicationListener<ApplicationStartedEvent> exitAfterStart() {
+        return event -> {
+            log.info("Started, exiting because app.startup.exit-after-start is set");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        };
+    }
+}
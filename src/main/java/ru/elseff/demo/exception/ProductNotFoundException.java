@@ -0,0 +1,33 @@
+package ru.elseff.demo.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Instant;
+import java.util.Collection;
+
+/**
+ * 404 of a product lookup. Unknown ids are cheap to ask for, so the exception has no stack trace
+ * and builds its reason only when somebody reads it.
+ */
+public class ProductNotFoundException extends ProductStatusException {
+
+    private ProductNotFoundException(String reasonFormat, Object... reasonArgs) {
+        super(HttpStatus.NOT_FOUND, reasonFormat, reasonArgs);
+    }
+
+    public static ProductNotFoundException byId(Long id) {
+        return new ProductNotFoundException("Could not find product with id %s", id);
+    }
+
+    public static ProductNotFoundException byBarcode(Long barcode) {
+        return new ProductNotFoundException("Could not find product with barcode %s", barcode);
+    }
+
+    public static ProductNotFoundException byIds(Collection<Long> ids) {
+        return new ProductNotFoundException("Could not find products with ids %s", ids);
+    }
+
+    public static ProductNotFoundException priceAt(Long productId, Instant at) {
+        return new ProductNotFoundException("Could not find price of product with id %s at %s", productId, at);
+    }
+}
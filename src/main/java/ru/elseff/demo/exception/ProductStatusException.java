@@ -0,0 +1,44 @@
+package ru.elseff.demo.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * A product request answered with an error status clients run into routinely, such as a stale version
+ * or a sold out product. It has no stack trace and formats its reason only when somebody reads it.
+ */
+public class ProductStatusException extends ResponseStatusException {
+
+    private final String reasonFormat;
+
+    private final Object[] reasonArgs;
+
+    protected ProductStatusException(HttpStatus status, String reasonFormat, Object... reasonArgs) {
+        super(status);
+        this.reasonFormat = reasonFormat;
+        this.reasonArgs = reasonArgs;
+    }
+
+    public static ProductStatusException versionMismatch(Long id, Long version) {
+        return new ProductStatusException(HttpStatus.PRECONDITION_FAILED, "Product with id %s is at version %s", id, version);
+    }
+
+    public static ProductStatusException outOfStock(Long id) {
+        return new ProductStatusException(HttpStatus.CONFLICT, "Not enough stock for product with id %s", id);
+    }
+
+    @Override
+    public String getReason() {
+        return String.format(reasonFormat, reasonArgs);
+    }
+
+    @Override
+    public String getMessage() {
+        return getStatus() + " \"" + getReason() + "\"";
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
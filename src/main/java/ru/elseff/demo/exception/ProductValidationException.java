@@ -0,0 +1,20 @@
+package ru.elseff.demo.exception;
+
+import lombok.Getter;
+import ru.elseff.demo.exception.handling.dto.Violation;
+
+import java.util.List;
+
+/**
+ * 400 of a product payload rejected by the precompiled validator, answered without a stack trace.
+ */
+@Getter
+public class ProductValidationException extends RuntimeException {
+
+    private final List<Violation> violations;
+
+    public ProductValidationException(List<Violation> violations) {
+        super(null, null, false, false);
+        this.violations = violations;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.elseff.demo.exception.handling.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public class ErrorResponse {
+    private final String message;
+}
@@ -1,11 +1,18 @@
 package ru.elseff.demo.exception.handling.validation;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import ru.elseff.demo.exception.ProductNotFoundException;
+import ru.elseff.demo.exception.ProductValidationException;
+import ru.elseff.demo.exception.handling.dto.ErrorResponse;
 import ru.elseff.demo.exception.handling.dto.ValidationErrorResponse;
 import ru.elseff.demo.exception.handling.dto.Violation;
 
@@ -16,12 +23,16 @@ import java.util.stream.Collectors;
 @ControllerAdvice
 public class ValidationErrorHandlingControllerAdvice {
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @ResponseBody
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ExceptionHandler(ConstraintViolationException.class)
     public ValidationErrorResponse onConstraintValidationException(
             ConstraintViolationException e
     ) {
+        countValidationFailure("constraint");
         final List<Violation> violations = e.getConstraintViolations().stream()
                 .map(
                         violation -> new Violation(
@@ -39,10 +50,58 @@ public class ValidationErrorHandlingControllerAdvice {
     public ValidationErrorResponse onMethodArgumentNotValidException(
             MethodArgumentNotValidException e
     ) {
+        countValidationFailure("argument");
         final List<Violation> violations = e.getBindingResult().getFieldErrors().stream()
                 .map(error -> new Violation(error.getField(), error.getDefaultMessage()))
                 .collect(Collectors.toList());
         return new ValidationErrorResponse(violations);
     }
 
-}
\ No newline at end of file
+    @ResponseBody
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(ProductValidationException.class)
+    public ValidationErrorResponse onProductValidationException(
+            ProductValidationException e
+    ) {
+        countValidationFailure("argument");
+        return new ValidationErrorResponse(e.getViolations());
+    }
+
+    /**
+     * Answered here rather than by the error page, which would re-dispatch the request to {@code /error}.
+     */
+    @ResponseBody
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    @ExceptionHandler(ProductNotFoundException.class)
+    public ErrorResponse onProductNotFoundException(
+            ProductNotFoundException e
+    ) {
+        return new ErrorResponse(e.getReason());
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ValidationErrorResponse onDataIntegrityViolationException(
+            DataIntegrityViolationException e
+    ) {
+        String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+        Violation violation = cause.contains("products_barcode_uindex")
+                ? new Violation("barcode", "must be unique")
+                : new Violation("product", "conflicts with existing data");
+        return new ValidationErrorResponse(List.of(violation));
+    }
+
+    @ResponseBody
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ValidationErrorResponse onObjectOptimisticLockingFailureException(
+            ObjectOptimisticLockingFailureException e
+    ) {
+        return new ValidationErrorResponse(List.of(new Violation("product", "was modified concurrently, retry the request")));
+    }
+
+    private void countValidationFailure(String type) {
+        meterRegistry.counter("product.validation.failures", "type", type).increment();
+    }
+}
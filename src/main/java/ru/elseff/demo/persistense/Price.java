@@ -5,31 +5,19 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import javax.persistence.*;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
 
-@Entity
+/**
+ * Stored inline in the {@code products} row, so a product is written and read as a single row.
+ */
+@Embeddable
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Table(schema = "public", name = "prices")
 public class Price {
 
-    @Id
-    @Column(name = "id", nullable = false)
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
-    private Long id;
-
-    @OneToOne(fetch = FetchType.EAGER, optional = false)
-    @JoinColumn(name = "product_id",
-            referencedColumnName = "id",
-            nullable = false, unique = true)
-    private Product product;
-
-    @Column(name = "value", nullable = false)
+    @Column(name = "price_value", nullable = false)
     private Long value;
-
-    public Price(Long value) {
-        this.value = value;
-    }
 }
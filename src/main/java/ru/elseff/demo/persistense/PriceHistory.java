@@ -0,0 +1,36 @@
+package ru.elseff.demo.persistense;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.Instant;
+
+/**
+ * A price a product had from {@code validFrom} on, rows are written by the database
+ * whenever {@code products.price_value} changes and are never updated.
+ */
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor
+@Table(schema = "public", name = "price_history")
+public class PriceHistory {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "value", nullable = false)
+    private Long value;
+
+    @Column(name = "valid_from", nullable = false)
+    private Instant validFrom;
+}
@@ -4,29 +4,68 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
 
 import javax.persistence.*;
+import java.time.Instant;
 
+/**
+ * Kept in the second-level cache with its embedded price, and reachable there by barcode too.
+ * Writes invalidate the cached entry instead of replacing it, so the trigger-maintained
+ * {@code updated_at} is read back from the database before it is cached again.
+ */
 @Entity
 @Getter
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(schema = "public", name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+@NaturalIdCache
+@SqlResultSetMapping(name = Product.PRODUCT_DTO_MAPPING, classes = @ConstructorResult(
+        targetClass = ProductDto.class,
+        columns = {
+                @ColumnResult(name = "id", type = Long.class),
+                @ColumnResult(name = "name", type = String.class),
+                @ColumnResult(name = "barcode", type = Long.class),
+                @ColumnResult(name = "count_in_stock", type = Long.class),
+                @ColumnResult(name = "price_value", type = Long.class),
+                @ColumnResult(name = "version", type = Long.class),
+                @ColumnResult(name = "updated_at", type = Instant.class)}))
 public class Product {
+
+    /**
+     * Maps a native {@code products} row straight to {@link ProductDto}.
+     */
+    public static final String PRODUCT_DTO_MAPPING = "ProductDto";
+
     @Id
     @Column(name = "id", nullable = false)
-    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_id_generator")
+    @SequenceGenerator(name = "products_id_generator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false)
     private String name;
+    @NaturalId(mutable = true)
     @Column(name = "barcode", nullable = false)
     private Long barcode;
 
     @Column(name = "count_in_stock", nullable = false)
     private Long countInStock;
 
-    @OneToOne(fetch = FetchType.EAGER, mappedBy = "product", cascade = CascadeType.ALL)
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "updated_at", nullable = false, insertable = false, updatable = false)
+    private Instant updatedAt;
+
+    @Embedded
     private Price price;
 }
@@ -0,0 +1,43 @@
+package ru.elseff.demo.persistense;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * A product change from the outbox, written by the database in the transaction of the change.
+ * {@code seq} stays {@code null} until the change is committed and sequenced.
+ */
+@Entity
+@Immutable
+@Getter
+@NoArgsConstructor
+@Table(schema = "public", name = "product_events")
+public class ProductEvent {
+
+    @Id
+    @Column(name = "id", nullable = false)
+    private Long id;
+
+    @Column(name = "seq")
+    private Long seq;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false)
+    private ProductEventType type;
+
+    /**
+     * The product as JSON after the change, {@code null} for deletions.
+     */
+    @Column(name = "payload", columnDefinition = "jsonb")
+    private String payload;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+}
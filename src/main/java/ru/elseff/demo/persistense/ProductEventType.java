@@ -0,0 +1,7 @@
+package ru.elseff.demo.persistense;
+
+public enum ProductEventType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
@@ -0,0 +1,42 @@
+package ru.elseff.demo.persistense.dao;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.elseff.demo.persistense.PriceHistory;
+import ru.elseff.demo.web.api.modules.product.dto.PriceHistoryDto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Queries are bounded by {@code validFrom}, so partitions outside the bounds are pruned. A history is
+ * read from the partitions of the requested months only.
+ * <p>
+ * Rows are written by the {@code products} trigger only and never change, so reads are all there is.
+ */
+@Repository
+@Transactional(readOnly = true)
+public interface PriceHistoryRepository extends org.springframework.data.repository.Repository<PriceHistory, Long> {
+
+    String SELECT_PRICE_HISTORY_DTO = "select new ru.elseff.demo.web.api.modules.product.dto.PriceHistoryDto(" +
+            "h.value, h.validFrom) from PriceHistory h ";
+
+    @Query(SELECT_PRICE_HISTORY_DTO + "where h.productId = :productId " +
+            "and h.validFrom >= :from and h.validFrom < :to order by h.validFrom")
+    List<PriceHistoryDto> findHistory(@Param("productId") Long productId,
+                                      @Param("from") Instant from,
+                                      @Param("to") Instant to);
+
+    /**
+     * Bounded from above only: the latest price before {@code at} may be in any earlier month, so
+     * the partitions up to {@code at} each get one probe of the {@code (product_id, valid_from)} index.
+     */
+    @Query(SELECT_PRICE_HISTORY_DTO + "where h.productId = :productId " +
+            "and h.validFrom <= :at order by h.validFrom desc")
+    List<PriceHistoryDto> findLatestUntil(@Param("productId") Long productId,
+                                          @Param("at") Instant at,
+                                          Pageable pageable);
+}
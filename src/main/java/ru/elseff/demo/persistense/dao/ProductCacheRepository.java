@@ -0,0 +1,16 @@
+package ru.elseff.demo.persistense.dao;
+
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.util.Optional;
+
+/**
+ * Reads that go through the second-level cache and only reach the database on a miss.
+ */
+public interface ProductCacheRepository {
+
+    /**
+     * The product with {@code barcode}, resolved through the natural id cache.
+     */
+    Optional<ProductDto> findByNaturalId(Long barcode);
+}
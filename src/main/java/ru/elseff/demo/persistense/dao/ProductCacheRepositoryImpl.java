@@ -0,0 +1,27 @@
+package ru.elseff.demo.persistense.dao;
+
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Optional;
+
+public class ProductCacheRepositoryImpl implements ProductCacheRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ProductDto> findByNaturalId(Long barcode) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Product.class)
+                .loadOptional(barcode)
+                .map(product -> new ProductDto(product.getId(), product.getName(), product.getBarcode(),
+                        product.getCountInStock(), product.getPrice().getValue(),
+                        product.getVersion(), product.getUpdatedAt()));
+    }
+}
@@ -0,0 +1,23 @@
+package ru.elseff.demo.persistense.dao;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import ru.elseff.demo.persistense.ProductEvent;
+import ru.elseff.demo.web.api.modules.product.dto.ProductEventDto;
+
+import java.util.List;
+
+@Repository
+public interface ProductEventRepository extends JpaRepository<ProductEvent, Long> {
+
+    @Query("select new ru.elseff.demo.web.api.modules.product.dto.ProductEventDto(" +
+            "e.seq, e.productId, e.type, e.payload, e.occurredAt) from ProductEvent e " +
+            "where e.seq > :since order by e.seq")
+    List<ProductEventDto> findSequencedAfter(@Param("since") Long since, Pageable pageable);
+
+    @Query("select coalesce(max(e.seq), 0) from ProductEvent e")
+    Long findLatestSeq();
+}
@@ -1,10 +1,92 @@
 package ru.elseff.demo.persistense.dao;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+/**
+ * Declared queries run in read-only transactions, which routes them to a read replica when there is one,
+ * the modifying ones in transactions of their own.
+ */
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+@Transactional(readOnly = true)
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductSearchRepository,
+        ProductWriteRepository, ProductCacheRepository {
+
+    /**
+     * Reads products straight into {@link ProductDto} without hydrating managed entities.
+     */
+    String SELECT_PRODUCT_DTO = "select new ru.elseff.demo.web.api.modules.product.dto.ProductDto(" +
+            "p.id, p.name, p.barcode, p.countInStock, p.price.value, p.version, p.updatedAt) from Product p ";
+
+    @Query(SELECT_PRODUCT_DTO + "order by p.id")
+    List<ProductDto> findAllProjected();
+
+    /**
+     * Changes whenever a product is added, updated or deleted, on any instance, without reading the
+     * products themselves. Every change commits an event to the outbox, and sequencing an event
+     * moves it from the unsequenced count to the latest position, so the sum grows with every commit
+     * and never goes back. Not query-cached, the cache only sees this instance's writes.
+     */
+    @Query(value = "select cast((select coalesce(max(seq), 0) from public.product_events) + " +
+            "(select count(*) from public.product_events where seq is null) as varchar)", nativeQuery = true)
+    String findCatalogVersion();
+
+    @Query(SELECT_PRODUCT_DTO + "where p.id = :id")
+    Optional<ProductDto> findProjectedById(@Param("id") Long id);
+
+    @Query(SELECT_PRODUCT_DTO + "where p.id in :ids")
+    List<ProductDto> findProjectedByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(SELECT_PRODUCT_DTO + "where p.barcode in :barcodes")
+    List<ProductDto> findProjectedByBarcodeIn(@Param("barcodes") Collection<Long> barcodes);
+
+    @Query(SELECT_PRODUCT_DTO + "where p.id > :after order by p.id")
+    List<ProductDto> findProjectedPage(@Param("after") Long after, Pageable pageable);
+
+    @Query("select p.id from Product p where p.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("delete from Product p where p.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Takes {@code quantity} off the stock in a single conditional statement,
+     * returns 0 when the product is missing or has less than {@code quantity} left.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.countInStock = p.countInStock - :quantity, p.version = p.version + 1 " +
+            "where p.id = :id and p.countInStock >= :quantity")
+    int reserveStock(@Param("id") Long id, @Param("quantity") Long quantity);
+
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.countInStock = p.countInStock + :quantity, p.version = p.version + 1 " +
+            "where p.id = :id")
+    int releaseStock(@Param("id") Long id, @Param("quantity") Long quantity);
 
+    /**
+     * Walks the whole catalog through a server-side cursor, must be consumed inside a transaction.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_PRODUCT_DTO + "order by p.id")
+    Stream<ProductDto> streamAll();
 }
@@ -0,0 +1,16 @@
+package ru.elseff.demo.persistense.dao;
+
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSearchDto;
+
+import java.util.List;
+
+public interface ProductSearchRepository {
+
+    /**
+     * Finds up to {@code limit} products matching {@code search}, ordered by the sort key and id.
+     * When {@code afterId} is set, the page starts right after the product with that id
+     * and sort key {@code afterKey}.
+     */
+    List<ProductDto> search(ProductSearchDto search, Comparable<?> afterKey, Long afterId, int limit);
+}
@@ -0,0 +1,106 @@
+package ru.elseff.demo.persistense.dao;
+
+import org.springframework.transaction.annotation.Transactional;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSearchDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSort;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the search as one projected query, so only the filters that are set end up in the SQL
+ * and the supporting indexes stay usable.
+ */
+public class ProductSearchRepositoryImpl implements ProductSearchRepository {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductDto> search(ProductSearchDto search, Comparable<?> afterKey, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductDto> query = cb.createQuery(ProductDto.class);
+        Root<Product> product = query.from(Product.class);
+        Path<Long> price = product.get("price").get("value");
+        Path<Long> id = product.get("id");
+
+        List<Predicate> predicates = new ArrayList<>();
+        if (search.getNamePrefix() != null) {
+            predicates.add(cb.like(product.get("name"), escapeLike(search.getNamePrefix()) + "%", LIKE_ESCAPE));
+        }
+        if (search.getMinPrice() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(price, search.getMinPrice()));
+        }
+        if (search.getMaxPrice() != null) {
+            predicates.add(cb.lessThanOrEqualTo(price, search.getMaxPrice()));
+        }
+        if (search.isInStock()) {
+            predicates.add(cb.greaterThan(product.get("countInStock"), 0L));
+        }
+
+        boolean byId = search.getSort() == ProductSort.ID;
+        Expression<? extends Comparable<?>> key = sortKey(search.getSort(), product, price);
+        if (afterId != null) {
+            predicates.add(byId
+                    ? cb.greaterThan(id, afterId)
+                    : after(cb, key, afterKey, id, afterId));
+        }
+
+        query.select(cb.construct(ProductDto.class,
+                        id,
+                        product.get("name"),
+                        product.get("barcode"),
+                        product.get("countInStock"),
+                        price,
+                        product.get("version"),
+                        product.get("updatedAt")))
+                .where(predicates.toArray(Predicate[]::new))
+                .orderBy(byId
+                        ? List.of(cb.asc(id))
+                        : List.of(cb.asc(key), cb.asc(id)));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    private Expression<? extends Comparable<?>> sortKey(ProductSort sort, Root<Product> product, Path<Long> price) {
+        switch (sort) {
+            case NAME:
+                return product.get("name");
+            case PRICE:
+                return price;
+            default:
+                return product.get("id");
+        }
+    }
+
+    /**
+     * {@code (key, id) > (afterKey, afterId)} spelled out, criteria queries have no row values.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate after(CriteriaBuilder cb, Expression key, Comparable afterKey, Path<Long> id, Long afterId) {
+        return cb.or(
+                cb.greaterThan(key, afterKey),
+                cb.and(cb.equal(key, afterKey), cb.greaterThan(id, afterId)));
+    }
+
+    private String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
@@ -0,0 +1,22 @@
+package ru.elseff.demo.persistense.dao;
+
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+import java.util.Optional;
+
+public interface ProductWriteRepository {
+
+    /**
+     * Writes the non-null fields of {@code update} and bumps the version in a single statement,
+     * returning the product as it is after the write. Empty when no product with {@code id}
+     * is at {@code expectedVersion}, {@code null} matches any version.
+     */
+    Optional<ProductDto> patch(Long id, Long expectedVersion, ProductUpdateDto update);
+
+    /**
+     * Deletes the product in a single statement and returns its barcode, empty when no product
+     * with {@code id} is at {@code expectedVersion}, {@code null} matches any version.
+     */
+    Optional<Long> deleteReturningBarcode(Long id, Long expectedVersion);
+}
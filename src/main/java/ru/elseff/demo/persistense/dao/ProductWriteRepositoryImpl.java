@@ -0,0 +1,146 @@
+package ru.elseff.demo.persistense.dao;
+
+import org.hibernate.Cache;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.cache.spi.TimestampsCache;
+import org.hibernate.cache.spi.access.NaturalIdDataAccess;
+import org.hibernate.engine.spi.CacheImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.transaction.annotation.Transactional;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Writes products with {@code RETURNING} instead of loading them first, so a patch or a delete
+ * is one round trip. Triggers still see a regular row update or delete.
+ * <p>
+ * Hibernate takes these statements for queries, so they clean the second-level cache up themselves:
+ * cached query results over products are stale from the statement on, and the written product and
+ * its barcode lookup are evicted right away and again once the transaction completes, a read in
+ * between could put the old row back.
+ */
+public class ProductWriteRepositoryImpl implements ProductWriteRepository {
+
+    private static final String RETURNING_PRODUCT =
+            " returning id, name, barcode, count_in_stock, price_value, version, updated_at";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public Optional<ProductDto> patch(Long id, Long expectedVersion, ProductUpdateDto update) {
+        Map<String, Object> columns = new LinkedHashMap<>();
+        putIfSet(columns, "name", update.getName());
+        putIfSet(columns, "barcode", update.getBarcode());
+        putIfSet(columns, "count_in_stock", update.getCountInStock());
+        putIfSet(columns, "price_value", update.getPrice());
+
+        StringBuilder sql = new StringBuilder("update public.products set version = version + 1");
+        columns.keySet().forEach(column -> sql.append(", ").append(column).append(" = :").append(column));
+        sql.append(" where id = :id");
+        if (expectedVersion != null) {
+            sql.append(" and version = :version");
+        }
+        sql.append(RETURNING_PRODUCT);
+
+        Query query = entityManager.createNativeQuery(sql.toString(), Product.PRODUCT_DTO_MAPPING)
+                .setParameter("id", id);
+        columns.forEach(query::setParameter);
+        if (expectedVersion != null) {
+            query.setParameter("version", expectedVersion);
+        }
+        preInvalidateQueries();
+        Optional<ProductDto> patched = first(query);
+        // the old barcode is not returned, so a barcode change empties the lookups of all products
+        evictAfterWrite(id, update.getBarcode() == null ? null : cache -> cache.evictNaturalIdData(Product.class));
+        return patched;
+    }
+
+    @Override
+    @Transactional
+    public Optional<Long> deleteReturningBarcode(Long id, Long expectedVersion) {
+        Query query = entityManager.createNativeQuery(expectedVersion == null
+                        ? "delete from public.products where id = :id returning barcode"
+                        : "delete from public.products where id = :id and version = :version returning barcode")
+                .setParameter("id", id);
+        if (expectedVersion != null) {
+            query.setParameter("version", expectedVersion);
+        }
+        preInvalidateQueries();
+        Optional<Long> barcode = first(query).map(deleted -> ((Number) deleted).longValue());
+        evictAfterWrite(id, barcode.map(this::naturalIdEviction).orElse(null));
+        return barcode;
+    }
+
+    private void preInvalidateQueries() {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        TimestampsCache timestampsCache = session.getFactory().getCache().getTimestampsCache();
+        if (timestampsCache != null) {
+            timestampsCache.preInvalidate(persister(session).getQuerySpaces(), session);
+        }
+    }
+
+    /**
+     * Evicts the product and, with {@code naturalIdEviction}, its barcode lookup now, and again
+     * together with the query results once the transaction completes.
+     */
+    private void evictAfterWrite(Long id, Consumer<Cache> naturalIdEviction) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        Serializable[] querySpaces = persister(session).getQuerySpaces();
+        evict(session.getFactory().getCache(), id, naturalIdEviction);
+        session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, completed) -> {
+            CacheImplementor cache = completed.getFactory().getCache();
+            evict(cache, id, naturalIdEviction);
+            if (cache.getTimestampsCache() != null) {
+                cache.getTimestampsCache().invalidate(querySpaces, completed);
+            }
+        });
+    }
+
+    private Consumer<Cache> naturalIdEviction(Long barcode) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = persister(session);
+        if (!persister.hasNaturalIdCache()) {
+            return null;
+        }
+        NaturalIdDataAccess naturalIds = persister.getNaturalIdCacheAccessStrategy();
+        Object key = naturalIds.generateCacheKey(new Object[]{barcode}, persister, session);
+        return cache -> naturalIds.evict(key);
+    }
+
+    private static void evict(Cache cache, Long id, Consumer<Cache> naturalIdEviction) {
+        cache.evictEntityData(Product.class, id);
+        if (naturalIdEviction != null) {
+            naturalIdEviction.accept(cache);
+        }
+    }
+
+    private static EntityPersister persister(SessionImplementor session) {
+        return session.getFactory().getMetamodel().entityPersister(Product.class);
+    }
+
+    private static void putIfSet(Map<String, Object> columns, String column, Object value) {
+        if (value != null) {
+            columns.put(column, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Optional<T> first(Query query) {
+        List<T> rows = query.getResultList();
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.elseff.demo.persistense.routing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers when this instance last changed products. For {@code app.read-replicas.read-your-writes-window}
+ * after that, read-only transactions stay on the primary. Replicas are only read while they are less
+ * than the window behind (see {@link ReplicaRoutingDataSource}), so once it closes, neither a client
+ * reading what it has just written nor a cache refilled after a write can see the data before it.
+ */
+@Component
+public class ReadYourWrites {
+
+    @Value("${app.read-replicas.read-your-writes-window:5s}")
+    private Duration window;
+
+    private final AtomicLong primaryUntil = new AtomicLong(System.nanoTime());
+
+    /**
+     * Opens the window, inside a transaction it is opened again once the transaction completes.
+     */
+    public void recordWrite() {
+        extend();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    extend();
+                }
+            });
+        }
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public boolean hasRecentWrite() {
+        return System.nanoTime() - primaryUntil.get() < 0;
+    }
+
+    private void extend() {
+        long until = System.nanoTime() + window.toNanos();
+        primaryUntil.accumulateAndGet(until, (current, next) -> next - current > 0 ? next : current);
+    }
+}
@@ -0,0 +1,210 @@
+package ru.elseff.demo.persistense.routing;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Hands out connections of the least busy available replica inside read-only transactions, and of
+ * the primary everywhere else, while {@link ReadYourWrites} has a recent write, or when no replica
+ * is available. Busy means active connections of the replica pool, ties go round-robin.
+ * <p>
+ * A replica is available only while the lag measured by the last check, plus the time since that
+ * check, stays below the read-your-writes window. A write of this instance is therefore replayed on
+ * every available replica by the time its window closes, and nothing read from a replica, caches
+ * refilled after the write included, predates it. A replica that fails to give a connection or to
+ * answer the check is out at once, the next passing check puts it back.
+ * <p>
+ * The routing is decided when the connection is taken, so it must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} that takes it only at
+ * the first statement, after the transaction is marked read-only.
+ * <p>
+ * Metrics are bound rather than taken from a registry, the registry's own binders need every
+ * data source, this one included.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements MeterBinder, Closeable {
+
+    /**
+     * Seconds since the last replayed transaction, 0 on a primary and on a replica that has replayed
+     * all it received, which would otherwise look lagging while the primary is idle.
+     */
+    private static final String LAG_QUERY = "select case when not pg_is_in_recovery() " +
+            "or pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 " +
+            "else coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0) end";
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final ReadYourWrites readYourWrites;
+
+    private final long windowNanos;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final LongAdder replicaReads = new LongAdder();
+
+    private final LongAdder primaryReads = new LongAdder();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, ReadYourWrites readYourWrites) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.readYourWrites = readYourWrites;
+        this.windowNanos = readYourWrites.getWindow().toNanos();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("db.read.routing", replicaReads, LongAdder::sum)
+                .tag("target", "replica")
+                .register(registry);
+        FunctionCounter.builder("db.read.routing", primaryReads, LongAdder::sum)
+                .tag("target", "primary")
+                .register(registry);
+        for (Replica replica : replicas) {
+            Gauge.builder("db.replica.available", replica, available -> available.isAvailable() ? 1 : 0)
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("db.replica.lag", replica, lagging -> lagging.lagSeconds)
+                    .tag("replica", replica.name)
+                    .baseUnit("seconds")
+                    .register(registry);
+            Gauge.builder("db.replica.connections.active", replica, busy -> busy.activeConnections.getAsInt())
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return primary.getConnection();
+        }
+        if (!readYourWrites.hasRecentWrite()) {
+            for (Replica replica = select(); replica != null; replica = select()) {
+                try {
+                    Connection connection = replica.dataSource.getConnection();
+                    replicaReads.increment();
+                    return connection;
+                } catch (SQLException e) {
+                    eject(replica, e.getMessage());
+                }
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Measures the lag of every replica, which keeps it available for the rest of the window. Replicas
+     * that cannot be queried are taken out of rotation.
+     */
+    @Scheduled(fixedDelayString = "${app.read-replicas.health-check-interval:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            // taken before the query, so the time it takes counts as lag
+            long checkedAt = System.nanoTime();
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(LAG_QUERY)) {
+                lag.next();
+                boolean wasAvailable = replica.isAvailable();
+                replica.lagSeconds = lag.getDouble(1);
+                replica.availableUntil = checkedAt + windowNanos - (long) (replica.lagSeconds * 1_000_000_000L);
+                if (replica.isAvailable() && !wasAvailable) {
+                    log.info("Replica {} is back in rotation", replica.name);
+                } else if (!replica.isAvailable() && wasAvailable) {
+                    log.warn("Replica {} taken out of rotation: lags {}s behind", replica.name, replica.lagSeconds);
+                }
+            } catch (SQLException e) {
+                eject(replica, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    private Replica select() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        Replica leastBusy = null;
+        int leastActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.isAvailable()) {
+                int active = replica.activeConnections.getAsInt();
+                if (active < leastActive) {
+                    leastBusy = replica;
+                    leastActive = active;
+                }
+            }
+        }
+        return leastBusy;
+    }
+
+    private static void eject(Replica replica, String reason) {
+        if (replica.isAvailable()) {
+            replica.availableUntil = System.nanoTime();
+            log.warn("Replica {} taken out of rotation: {}", replica.name, reason);
+        }
+    }
+
+    public static final class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private final IntSupplier activeConnections;
+
+        /**
+         * Until the next check, not at all before the first one.
+         */
+        private volatile long availableUntil = System.nanoTime();
+
+        private volatile double lagSeconds;
+
+        public Replica(String name, DataSource dataSource, IntSupplier activeConnections) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.activeConnections = activeConnections;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isAvailable() {
+            return System.nanoTime() - availableUntil < 0;
+        }
+    }
+}
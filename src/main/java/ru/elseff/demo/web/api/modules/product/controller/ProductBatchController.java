@@ -0,0 +1,56 @@
+package ru.elseff.demo.web.api.modules.product.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import ru.elseff.demo.web.api.modules.product.dto.ProductBatchUpdateDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+import ru.elseff.demo.web.api.modules.product.service.ProductService;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@Validated
+@RestController
+@RequestMapping("/api/v1/products:batch")
+public class ProductBatchController {
+
+    private static final int MAX_BATCH_SIZE = 10_000;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<ProductDto> addProducts(@RequestBody @Size(min = 1, max = MAX_BATCH_SIZE)
+                                        List<@Valid @NotNull ProductDto> products) {
+        return productService.addProducts(products)
+                .stream()
+                .map(productMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @PatchMapping
+    @ResponseStatus(HttpStatus.OK)
+    public List<ProductDto> updateProducts(@RequestBody @Size(min = 1, max = MAX_BATCH_SIZE)
+                                           List<@Valid @NotNull ProductBatchUpdateDto> products) {
+        return productService.updateProducts(products)
+                .stream()
+                .map(productMapper::toDto)
+                .collect(Collectors.toList());
+    }
+
+    @DeleteMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteProducts(@RequestBody @Size(min = 1, max = MAX_BATCH_SIZE) List<@NotNull Long> ids) {
+        productService.deleteProducts(ids);
+    }
+}
@@ -1,66 +1,289 @@
 package ru.elseff.demo.web.api.modules.product.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
-import ru.elseff.demo.persistense.Product;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.elseff.demo.web.api.modules.product.dto.PriceHistoryDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductChangesDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductExportFormat;
+import ru.elseff.demo.web.api.modules.product.dto.ProductPageDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSearchDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSort;
 import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+import ru.elseff.demo.web.api.modules.product.dto.StockChangeDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+import ru.elseff.demo.web.api.modules.product.service.PriceHistoryService;
+import ru.elseff.demo.web.api.modules.product.service.ProductChangeFeed;
+import ru.elseff.demo.web.api.modules.product.service.ProductExportService;
 import ru.elseff.demo.web.api.modules.product.service.ProductService;
+import ru.elseff.demo.web.api.modules.product.validation.ProductValidator;
 
 import javax.validation.Valid;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @Validated
 @RestController
 @RequestMapping("/api/v1/products")
 public class ProductController {
 
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private PriceHistoryService priceHistoryService;
+
+    @Autowired
+    private ProductExportService productExportService;
+
+    @Autowired
+    private ProductChangeFeed productChangeFeed;
+
+    @Autowired
+    private ProductMapper productMapper;
+
+    @Autowired
+    private ProductValidator productValidator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * The ETag is the catalog version kept by the product outbox, which moves with every change
+     * made through any instance, so an unchanged catalog is answered with 304 before any product is read. There is no Last-Modified, deletes would not move it.
+     * The body is pre-rendered JSON, written to the response as is.
+     */
     @GetMapping
+    public ResponseEntity<byte[]> getAll(WebRequest request) {
+        String catalogVersion = productService.getCatalogVersion();
+        String eTag = quote(catalogVersion);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productService.getAllJson(catalogVersion));
+    }
+
+    /**
+     * Multi-get, products come in the order of {@code ids} and unknown ids are skipped.
+     * With a {@code limit} the request is a page instead, see {@link #getPage}.
+     */
+    @GetMapping(params = {"ids", "!limit"})
     @ResponseStatus(HttpStatus.OK)
-    public List<ProductDto> getAll() {
-        return productService.getAll()
-                .stream()
-                .map(this::convertProductToDto)
-                .collect(Collectors.toList());
+    public List<ProductDto> getByIds(@RequestParam @Size(min = 1, max = 1000) List<Long> ids) {
+        return productService.getByIds(ids);
+    }
+
+    @GetMapping(params = "limit")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPageDto getPage(@RequestParam(required = false) Long after,
+                                  @RequestParam @Min(1) @Max(1000) Integer limit) {
+        List<ProductDto> products = productService.getPage(after, limit);
+        String nextCursor = products.size() < limit ? null : String.valueOf(products.get(products.size() - 1).getId());
+        return new ProductPageDto(products, nextCursor);
+    }
+
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductPageDto search(@RequestParam(required = false) @Size(min = 1, max = 255) String name,
+                                 @RequestParam(required = false) @PositiveOrZero Long minPrice,
+                                 @RequestParam(required = false) @PositiveOrZero Long maxPrice,
+                                 @RequestParam(defaultValue = "false") boolean inStock,
+                                 @RequestParam(defaultValue = "ID") ProductSort sort,
+                                 @RequestParam(required = false) String after,
+                                 @RequestParam(defaultValue = "100") @Min(1) @Max(1000) Integer limit) {
+        ProductSearchDto search = new ProductSearchDto(name, minPrice, maxPrice, inStock, sort);
+        return productService.search(search, after, limit);
+    }
+
+    /**
+     * Product changes after position {@code since} in commit order. When there are none yet,
+     * the request waits up to {@code timeout} seconds for them and then answers with no events.
+     */
+    @GetMapping("/changes")
+    public DeferredResult<ProductChangesDto> getChanges(@RequestParam(defaultValue = "0") @PositiveOrZero Long since,
+                                                        @RequestParam(defaultValue = "500") @Min(1) @Max(1000) Integer limit,
+                                                        @RequestParam(defaultValue = "30") @Min(1) @Max(60) Integer timeout) {
+        return productChangeFeed.changes(since, limit, timeout * 1000L);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamAll() {
+        ObjectWriter writer = objectMapper.writerFor(ProductDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                productService.streamAll(productDto -> writeLine(writer, generator, productDto));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .body(body);
     }
 
+    /**
+     * Full dump of the catalog, gzip compressed when the client accepts it.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "csv") @Pattern(regexp = "csv|ndjson") String format,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ProductExportFormat exportFormat = ProductExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        StreamingResponseBody body = outputStream -> {
+            if (gzip) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream, GZIP_BUFFER_SIZE);
+                productExportService.export(exportFormat, gzipOutputStream);
+                gzipOutputStream.finish();
+            } else {
+                productExportService.export(exportFormat, outputStream);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products." + exportFormat.getExtension())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Conditional requests are answered from the cached product, a 304 is not serialized
+     * and a 200 carries the JSON rendered for this product version.
+     */
     @GetMapping("/{id}")
+    public ResponseEntity<byte[]> getSpecific(@PathVariable Long id) {
+        ProductDto productDto = productService.getSpecific(id);
+        return ResponseEntity.ok()
+                .eTag(quote(String.valueOf(productDto.getVersion())))
+                .lastModified(productDto.getUpdatedAt())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(productService.toJson(productDto));
+    }
+
+    @GetMapping("/{id}/prices")
+    @ResponseStatus(HttpStatus.OK)
+    public List<PriceHistoryDto> getPriceHistory(@PathVariable Long id,
+                                                 @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+                                                 @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        return priceHistoryService.getHistory(id, from, to == null ? Instant.now() : to);
+    }
+
+    @GetMapping("/{id}/prices/as-of")
+    @ResponseStatus(HttpStatus.OK)
+    public PriceHistoryDto getPriceAt(@PathVariable Long id,
+                                      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        return priceHistoryService.getPriceAt(id, at);
+    }
+
+    @GetMapping("/by-barcode/{barcode}")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductDto getByBarcode(@PathVariable Long barcode) {
+        return productService.getByBarcode(barcode);
+    }
+
+    @GetMapping("/by-barcode")
     @ResponseStatus(HttpStatus.OK)
-    public ProductDto getSpecific(@PathVariable Long id) {
-        return convertProductToDto(productService.getSpecific(id));
+    public List<ProductDto> getByBarcodes(@RequestParam @Size(min = 1, max = 1000) List<Long> barcodes) {
+        return productService.getByBarcodes(barcodes);
     }
 
     @PostMapping
     @ResponseStatus(HttpStatus.CREATED)
-    public ProductDto addProduct(@RequestBody @Valid ProductDto productDto) {
-        return convertProductToDto(productService.addProduct(productDto));
+    public ProductDto addProduct(@RequestBody ProductDto productDto) {
+        productValidator.requireValid(productDto);
+        return productMapper.toDto(productService.addProduct(productDto));
     }
 
     @PatchMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public ProductDto updateProduct(@PathVariable Long id, @RequestBody @Valid ProductUpdateDto productUpdateDto) {
-        return convertProductToDto(productService.updateProduct(id, productUpdateDto));
+    public ResponseEntity<ProductDto> updateProduct(@PathVariable Long id,
+                                                    @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                    @RequestBody ProductUpdateDto productUpdateDto) {
+        productValidator.requireValid(productUpdateDto);
+        ProductDto productDto = productService.updateProduct(id, expectedVersion(ifMatch), productUpdateDto);
+        return ResponseEntity.ok()
+                .eTag(quote(String.valueOf(productDto.getVersion())))
+                .body(productDto);
+    }
+
+    @PostMapping("/{id}/stock/reserve")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void reserveStock(@PathVariable Long id, @RequestBody @Valid StockChangeDto stockChangeDto) {
+        productService.reserveStock(id, stockChangeDto.getQuantity());
+    }
+
+    @PostMapping("/{id}/stock/release")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void releaseStock(@PathVariable Long id, @RequestBody @Valid StockChangeDto stockChangeDto) {
+        productService.releaseStock(id, stockChangeDto.getQuantity());
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteProduct(@PathVariable Long id) {
-        productService.deleteProduct(id);
-    }
-
-    private ProductDto convertProductToDto(Product product) {
-        ProductDto productDto = new ProductDto();
-        productDto.setCountInStock(product.getCountInStock());
-        productDto.setPrice(product.getPrice().getValue());
-        productDto.setBarcode(product.getBarcode());
-        productDto.setName(product.getName());
-        productDto.setId(product.getId());
-        return productDto;
+    public void deleteProduct(@PathVariable Long id,
+                              @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        productService.deleteProduct(id, expectedVersion(ifMatch));
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+    /**
+     * The product version an {@code If-Match} header asks for, {@code null} when any version will do.
+     */
+    private static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String eTag = ifMatch.trim();
+        if (eTag.length() < 2 || !eTag.startsWith("\"") || !eTag.endsWith("\"")) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match must be a single strong ETag");
+        }
+        try {
+            return Long.valueOf(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match does not match any product version");
+        }
+    }
+
+    private void writeLine(ObjectWriter writer, JsonGenerator generator, ProductDto productDto) {
+        try {
+            writer.writeValue(generator, productDto);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
@@ -0,0 +1,76 @@
+package ru.elseff.demo.web.api.modules.product.controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportJobDto;
+import ru.elseff.demo.web.api.modules.product.service.ProductImportService;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk import of supplier feeds. The body is read as it arrives and the response is the final
+ * report of the import. The status and the {@code Location} of the job are sent as soon as the
+ * header of the feed is read, so a client can follow the progress under {@code /{jobId}} while
+ * it is still uploading.
+ * <p>
+ * Sending the status early does not release the request: the request thread reads the body and
+ * waits for the pipeline until the last row is written, so every running import holds one Tomcat
+ * thread and one slot of its endpoint's concurrency limit for the whole upload. Their number is
+ * bounded by {@code app.import.max-concurrent-jobs}, which has to stay well below
+ * {@code server.tomcat.threads.max}.
+ */
+@RestController
+@RequestMapping("/api/v1/products:import")
+public class ProductImportController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    private ProductImportService productImportService;
+
+    @PostMapping(consumes = "text/csv")
+    @ResponseStatus(HttpStatus.CREATED)
+    public ProductImportJobDto importCsv(InputStream body, HttpServletResponse response) {
+        return productImportService.importCsv(body, jobId -> sendCreated(response, jobId));
+    }
+
+    @PostMapping(consumes = NDJSON)
+    @ResponseStatus(HttpStatus.CREATED)
+    public ProductImportJobDto importNdjson(InputStream body, HttpServletResponse response) {
+        return productImportService.importNdjson(body, jobId -> sendCreated(response, jobId));
+    }
+
+    @GetMapping
+    @ResponseStatus(HttpStatus.OK)
+    public List<ProductImportJobDto> getJobs() {
+        return productImportService.getJobs();
+    }
+
+    @GetMapping("/{jobId}")
+    @ResponseStatus(HttpStatus.OK)
+    public ProductImportJobDto getJob(@PathVariable UUID jobId) {
+        return productImportService.getJob(jobId);
+    }
+
+    /**
+     * Commits the response, the report is written into it once the import is done.
+     */
+    private static void sendCreated(HttpServletResponse response, UUID jobId) {
+        response.setStatus(HttpStatus.CREATED.value());
+        response.setHeader(HttpHeaders.LOCATION, "/api/v1/products:import/" + jobId);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceHistoryDto {
+
+    private Long price;
+
+    private Instant validFrom;
+}
@@ -0,0 +1,16 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductBatchUpdateDto extends ProductUpdateDto {
+
+    @NotNull
+    private Long id;
+}
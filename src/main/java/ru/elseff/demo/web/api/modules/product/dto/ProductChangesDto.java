@@ -0,0 +1,22 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangesDto {
+
+    private List<ProductEventDto> events;
+
+    /**
+     * Position to pass as {@code since} for the next poll.
+     */
+    private Long next;
+}
@@ -1,8 +1,10 @@
 package ru.elseff.demo.web.api.modules.product.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 
 import javax.validation.constraints.*;
+import java.time.Instant;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -30,4 +32,20 @@ public class ProductDto {
     @NotNull
     @Positive
     private Long price;
+
+    /**
+     * Sent as the {@code ETag} header rather than in the body.
+     */
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * Sent as the {@code Last-Modified} header rather than in the body.
+     */
+    @JsonIgnore
+    private Instant updatedAt;
+
+    public ProductDto(Long id, String name, Long barcode, Long countInStock, Long price) {
+        this(id, name, barcode, countInStock, price, null, null);
+    }
 }
@@ -0,0 +1,31 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.elseff.demo.persistense.ProductEventType;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductEventDto {
+
+    private Long seq;
+
+    private Long productId;
+
+    private ProductEventType type;
+
+    /**
+     * The product after the change, copied into the response as stored.
+     */
+    @JsonRawValue
+    private String product;
+
+    private Instant occurredAt;
+}
@@ -0,0 +1,23 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ru.elseff.demo.exception.handling.dto.Violation;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportErrorDto {
+
+    /**
+     * Line of the imported file, starting from 1 and counting the CSV header.
+     */
+    private long line;
+
+    private List<Violation> violations;
+}
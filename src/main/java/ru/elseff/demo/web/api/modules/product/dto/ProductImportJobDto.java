@@ -0,0 +1,36 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductImportJobDto {
+
+    private UUID id;
+
+    private ProductImportStatus status;
+
+    private long rowsRead;
+
+    private long rowsImported;
+
+    private long rowsFailed;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    /**
+     * Rejected rows, only the first {@code app.import.max-reported-errors} of them.
+     */
+    private List<ProductImportErrorDto> errors;
+}
@@ -0,0 +1,7 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+public enum ProductImportStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
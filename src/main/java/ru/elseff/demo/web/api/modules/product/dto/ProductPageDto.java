@@ -0,0 +1,22 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductPageDto {
+
+    private List<ProductDto> products;
+
+    /**
+     * Cursor to pass as {@code after} to fetch the next page, {@code null} on the last page.
+     */
+    private String nextCursor;
+}
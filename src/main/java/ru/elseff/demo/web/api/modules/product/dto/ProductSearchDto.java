@@ -0,0 +1,26 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Product search filters, {@code null} filters are not applied.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSearchDto {
+
+    private String namePrefix;
+
+    private Long minPrice;
+
+    private Long maxPrice;
+
+    private boolean inStock;
+
+    private ProductSort sort = ProductSort.ID;
+}
@@ -0,0 +1,10 @@
+package ru.elseff.demo.web.api.modules.product.dto;
+
+/**
+ * Sort keys of the product search, ties are always broken by id.
+ */
+public enum ProductSort {
+    ID,
+    NAME,
+    PRICE
+}
@@ -0,0 +1,50 @@
+package ru.elseff.demo.web.api.modules.product.mapper;
+
+import org.mapstruct.AfterMapping;
+import org.mapstruct.BeanMapping;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingTarget;
+import org.mapstruct.NullValuePropertyMappingStrategy;
+import ru.elseff.demo.persistense.Price;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+/**
+ * Product mappings generated at compile time, so nothing is resolved reflectively per call.
+ */
+@Mapper(componentModel = "spring")
+public interface ProductMapper {
+
+    @Mapping(target = "price", source = "price.value")
+    ProductDto toDto(Product product);
+
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "price", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    Product toEntity(ProductDto productDto);
+
+    /**
+     * Copies the non-null fields of {@code productUpdateDto} onto {@code product}.
+     */
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.IGNORE)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "price", ignore = true)
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    void update(ProductUpdateDto productUpdateDto, @MappingTarget Product product);
+
+    @AfterMapping
+    default void mapPrice(ProductDto productDto, @MappingTarget Product product) {
+        product.setPrice(new Price(productDto.getPrice()));
+    }
+
+    @AfterMapping
+    default void updatePrice(ProductUpdateDto productUpdateDto, @MappingTarget Product product) {
+        if (productUpdateDto.getPrice() != null) {
+            product.getPrice().setValue(productUpdateDto.getPrice());
+        }
+    }
+}
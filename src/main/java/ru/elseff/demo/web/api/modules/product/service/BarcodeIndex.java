@@ -0,0 +1,83 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory {@code barcode -> product id} index of this instance.
+ * Entries may go stale when another instance changes a product, so a hit has to be verified
+ * against the product it points to.
+ */
+@Component
+public class BarcodeIndex {
+
+    public static final long NOT_FOUND = LongLongHashMap.NO_VALUE;
+
+    @Value("${app.product.barcode-index.enabled:true}")
+    private boolean enabled;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final LongLongHashMap index = new LongLongHashMap(1024);
+
+    public long find(long barcode) {
+        if (!enabled) {
+            return NOT_FOUND;
+        }
+        lock.readLock().lock();
+        try {
+            return index.get(barcode);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(long barcode, long id) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.put(barcode, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long barcode) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.remove(barcode);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeIds(Set<Long> ids) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            index.removeValues(ids);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
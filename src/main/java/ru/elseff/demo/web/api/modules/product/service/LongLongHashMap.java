@@ -0,0 +1,166 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Open-addressing {@code long -> long} hash map with linear probing, so lookups never box.
+ * Not thread-safe, callers guard it themselves.
+ */
+final class LongLongHashMap {
+
+    static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final long EMPTY_KEY = 0L;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    LongLongHashMap(int expectedSize) {
+        allocate(tableSizeFor((int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR)));
+    }
+
+    int size() {
+        return hasZeroKey ? size + 1 : size;
+    }
+
+    long get(long key) {
+        if (key == EMPTY_KEY) {
+            return hasZeroKey ? zeroValue : NO_VALUE;
+        }
+        int index = slot(key);
+        while (true) {
+            long existing = keys[index];
+            if (existing == EMPTY_KEY) {
+                return NO_VALUE;
+            }
+            if (existing == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    void put(long key, long value) {
+        if (key == EMPTY_KEY) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+        int index = slot(key);
+        while (true) {
+            long existing = keys[index];
+            if (existing == EMPTY_KEY) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size >= resizeThreshold) {
+                    resize();
+                }
+                return;
+            }
+            if (existing == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    void remove(long key) {
+        if (key == EMPTY_KEY) {
+            hasZeroKey = false;
+            return;
+        }
+        int index = slot(key);
+        while (true) {
+            long existing = keys[index];
+            if (existing == EMPTY_KEY) {
+                return;
+            }
+            if (existing == key) {
+                shiftBack(index);
+                size--;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes every entry whose value is in {@code removedValues}, costs a full table scan.
+     */
+    void removeValues(Set<Long> removedValues) {
+        if (hasZeroKey && removedValues.contains(zeroValue)) {
+            hasZeroKey = false;
+        }
+        long[] removedKeys = new long[size];
+        int removed = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY && removedValues.contains(values[i])) {
+                removedKeys[removed++] = keys[i];
+            }
+        }
+        for (int i = 0; i < removed; i++) {
+            remove(removedKeys[i]);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        size = 0;
+        hasZeroKey = false;
+    }
+
+    /**
+     * Backward-shift deletion: pulls later entries of the probe chain into the gap
+     * so lookups never need tombstones.
+     */
+    private void shiftBack(int gap) {
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int ideal = slot(keys[next]);
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY_KEY;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        return Integer.highestOneBit(capacity - 1) << 1;
+    }
+}
@@ -0,0 +1,47 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Creates the price history partitions of the current and the next month ahead of time.
+ * A partition can not be created once rows of its month have landed in the default partition.
+ * <p>
+ * Creating partitions takes DDL rights, so only instances with {@code app.price-history.manage-partitions}
+ * do it, by default those that migrate the database, and of those one at a time.
+ */
+@Component
+@ConditionalOnProperty(name = "app.price-history.manage-partitions", havingValue = "true", matchIfMissing = true)
+public class PriceHistoryPartitions {
+
+    private static final long LOCK_KEY = 0x7072696365735f68L;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    @Scheduled(cron = "${app.price-history.partitions-cron:0 0 0 * * *}", zone = "UTC")
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensurePartitions() {
+        Boolean locked = jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        create(today);
+        create(today.plusMonths(1));
+    }
+
+    private void create(LocalDate month) {
+        jdbcTemplate.queryForObject("select public.create_price_history_partition(?)", String.class, month);
+    }
+}
@@ -0,0 +1,33 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import ru.elseff.demo.exception.ProductNotFoundException;
+import ru.elseff.demo.persistense.dao.PriceHistoryRepository;
+import ru.elseff.demo.web.api.modules.product.dto.PriceHistoryDto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Past prices of products, the current price is read from the product itself.
+ */
+@Service
+@Timed(value = "product.service", histogram = true)
+public class PriceHistoryService {
+
+    @Autowired
+    private PriceHistoryRepository priceHistoryRepository;
+
+    public List<PriceHistoryDto> getHistory(Long productId, Instant from, Instant to) {
+        return priceHistoryRepository.findHistory(productId, from, to);
+    }
+
+    public PriceHistoryDto getPriceAt(Long productId, Instant at) {
+        return priceHistoryRepository.findLatestUntil(productId, at, Pageable.ofSize(1)).stream()
+                .findFirst()
+                .orElseThrow(() -> ProductNotFoundException.priceAt(productId, at));
+    }
+}
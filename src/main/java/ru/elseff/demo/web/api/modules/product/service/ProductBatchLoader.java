@@ -0,0 +1,166 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalesces concurrent by-id lookups into one {@code where id in (...)} query.
+ * <p>
+ * The first caller to find no open batch becomes its leader: it waits up to
+ * {@code app.batch-loader.window-micros} for other callers to add their ids, or until
+ * {@code app.batch-loader.max-batch-size} ids are in, then runs the query on its own thread and
+ * completes everyone's future. A leader that is the only caller in flight runs right away, so an
+ * idle instance pays no extra latency. There is no dispatcher thread to size or to shut down.
+ */
+@Component
+public class ProductBatchLoader {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.batch-loader.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.batch-loader.window-micros:500}")
+    private long windowMicros;
+
+    @Value("${app.batch-loader.max-batch-size:100}")
+    private int maxBatchSize;
+
+    private final AtomicReference<Batch> open = new AtomicReference<>();
+
+    private final AtomicInteger loading = new AtomicInteger();
+
+    public Optional<ProductDto> load(Long id) {
+        if (!enabled) {
+            return productRepository.findProjectedById(id);
+        }
+        loading.incrementAndGet();
+        try {
+            while (true) {
+                Batch batch = open.get();
+                if (batch == null) {
+                    Batch created = new Batch(Thread.currentThread(), maxBatchSize);
+                    CompletableFuture<ProductDto> result = created.add(id);
+                    if (open.compareAndSet(null, created)) {
+                        lead(created);
+                        return Optional.ofNullable(join(result));
+                    }
+                    continue;
+                }
+                CompletableFuture<ProductDto> result = batch.add(id);
+                if (result != null) {
+                    return Optional.ofNullable(join(result));
+                }
+                open.compareAndSet(batch, null);
+            }
+        } finally {
+            loading.decrementAndGet();
+        }
+    }
+
+    private void lead(Batch batch) {
+        if (loading.get() > 1) {
+            long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(windowMicros);
+            long remaining;
+            while (!batch.isFull() && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        Map<Long, CompletableFuture<ProductDto>> results = batch.close();
+        open.compareAndSet(batch, null);
+
+        meterRegistry.summary("product.loader.batch.size").record(results.size());
+        try {
+            Map<Long, ProductDto> products = new HashMap<>();
+            for (ProductDto productDto : query(results)) {
+                products.put(productDto.getId(), productDto);
+            }
+            results.forEach((id, result) -> result.complete(products.get(id)));
+        } catch (RuntimeException e) {
+            results.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private List<ProductDto> query(Map<Long, CompletableFuture<ProductDto>> results) {
+        if (results.size() == 1) {
+            return productRepository.findProjectedById(results.keySet().iterator().next())
+                    .map(List::of)
+                    .orElse(List.of());
+        }
+        return productRepository.findProjectedByIdIn(new ArrayList<>(results.keySet()));
+    }
+
+    private static ProductDto join(CompletableFuture<ProductDto> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Ids waiting for the same query, callers asking for the same id share one future.
+     */
+    private static final class Batch {
+
+        private final Thread leader;
+
+        private final int maxSize;
+
+        private final Map<Long, CompletableFuture<ProductDto>> results = new LinkedHashMap<>();
+
+        private boolean closed;
+
+        private Batch(Thread leader, int maxSize) {
+            this.leader = leader;
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * The future of {@code id}, {@code null} once the batch no longer takes ids.
+         */
+        synchronized CompletableFuture<ProductDto> add(Long id) {
+            if (closed || results.size() >= maxSize) {
+                return null;
+            }
+            CompletableFuture<ProductDto> result = results.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (results.size() >= maxSize) {
+                LockSupport.unpark(leader);
+            }
+            return result;
+        }
+
+        synchronized boolean isFull() {
+            return results.size() >= maxSize;
+        }
+
+        synchronized Map<Long, CompletableFuture<ProductDto>> close() {
+            closed = true;
+            return results;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Evicts products changed through any instance from the product cache of this one, by following
+ * the outbox: a change is evicted everywhere once its event has a feed position, within a poll
+ * interval or two of its commit. Changes of this instance come back too, they were evicted at
+ * commit already and are simply evicted again.
+ * <p>
+ * The first poll starts at the latest position and clears the cache, whatever was cached before
+ * may predate changes sequenced before that position.
+ */
+@Component
+public class ProductCacheInvalidator {
+
+    private static final String LATEST_SEQ = "select coalesce(max(seq), 0) from public.product_events";
+
+    private static final String CHANGED_AFTER = "select seq, product_id from public.product_events " +
+            "where seq > ? order by seq limit ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductService productService;
+
+    @Value("${app.product-events.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Only touched by the scheduler thread.
+     */
+    private long position = -1;
+
+    @Scheduled(fixedDelayString = "${app.product-events.poll-interval:200}")
+    public void poll() {
+        if (position < 0) {
+            position = jdbcTemplate.queryForObject(LATEST_SEQ, Long.class);
+            productService.evictAllProducts();
+            return;
+        }
+        int read;
+        do {
+            Set<Long> ids = new LinkedHashSet<>();
+            long[] last = {position};
+            read = jdbcTemplate.query(CHANGED_AFTER, (resultSet, rowNum) -> {
+                last[0] = resultSet.getLong(1);
+                ids.add(resultSet.getLong(2));
+                return null;
+            }, position, batchSize).size();
+            productService.evictProducts(ids);
+            position = last[0];
+        } while (read == batchSize);
+    }
+}
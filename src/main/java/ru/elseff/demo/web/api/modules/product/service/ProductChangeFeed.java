@@ -0,0 +1,94 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import ru.elseff.demo.persistense.dao.ProductEventRepository;
+import ru.elseff.demo.web.api.modules.product.dto.ProductChangesDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductEventDto;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Long-poll feed over the product outbox. Requests with nothing new to read are parked without
+ * holding a thread, and are answered by the next poll that finds events past their position.
+ */
+@Component
+public class ProductChangeFeed {
+
+    @Autowired
+    private ProductEventRepository productEventRepository;
+
+    @Autowired
+    private ProductEventSequencer productEventSequencer;
+
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Events after {@code since}, waiting up to {@code timeoutMillis} for the first one to arrive.
+     */
+    public DeferredResult<ProductChangesDto> changes(long since, int limit, long timeoutMillis) {
+        DeferredResult<ProductChangesDto> result = new DeferredResult<>(timeoutMillis,
+                () -> new ProductChangesDto(List.of(), since));
+        List<ProductEventDto> events = read(since, limit);
+        if (!events.isEmpty()) {
+            result.setResult(toChanges(since, events));
+            return result;
+        }
+        Waiter waiter = new Waiter(since, limit, result);
+        result.onCompletion(() -> waiters.remove(waiter));
+        waiters.add(waiter);
+        return result;
+    }
+
+    /**
+     * Sequences newly committed events, then answers the parked requests they are news for.
+     * Requests waiting at the same position share one read.
+     */
+    @Scheduled(fixedDelayString = "${app.product-events.poll-interval:200}")
+    public void poll() {
+        productEventSequencer.sequence();
+        if (waiters.isEmpty()) {
+            return;
+        }
+        long latest = productEventRepository.findLatestSeq();
+        Map<Long, List<ProductEventDto>> reads = new HashMap<>();
+        for (Waiter waiter : waiters) {
+            if (waiter.since < latest) {
+                List<ProductEventDto> events = reads.computeIfAbsent(waiter.since, since -> read(since, waiter.limit));
+                List<ProductEventDto> page = events.size() > waiter.limit ? events.subList(0, waiter.limit) : events;
+                waiter.result.setResult(toChanges(waiter.since, page));
+            }
+        }
+    }
+
+    private List<ProductEventDto> read(long since, int limit) {
+        return productEventRepository.findSequencedAfter(since, Pageable.ofSize(limit));
+    }
+
+    private ProductChangesDto toChanges(long since, List<ProductEventDto> events) {
+        long next = events.isEmpty() ? since : events.get(events.size() - 1).getSeq();
+        return new ProductChangesDto(events, next);
+    }
+
+    private static final class Waiter {
+
+        private final long since;
+
+        private final int limit;
+
+        private final DeferredResult<ProductChangesDto> result;
+
+        private Waiter(long since, int limit, DeferredResult<ProductChangesDto> result) {
+            this.since = since;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Gives committed outbox events their feed position. Event ids are taken when a transaction
+ * writes, not when it commits, so a consumer reading by id could skip a long transaction that
+ * commits after it read past that id. Positions are instead assigned here, by one instance at a
+ * time, only to events that are already committed, so they never appear behind a position a
+ * consumer has seen.
+ */
+@Component
+public class ProductEventSequencer {
+
+    private static final long LOCK_KEY = 0x70726f6475637473L;
+
+    private static final String SEQUENCE_EVENTS = "with pending as (" +
+            "select id, nextval('public.product_events_seq') as seq from (" +
+            "select id from public.product_events where seq is null order by id limit ? for update) ids) " +
+            "update public.product_events e set seq = pending.seq from pending where e.id = pending.id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.product-events.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Sequences up to {@code app.product-events.batch-size} events, returns how many
+     * or 0 when another instance is sequencing right now.
+     */
+    @Transactional
+    public int sequence() {
+        Boolean locked = jdbcTemplate.queryForObject("select pg_try_advisory_xact_lock(?)", Boolean.class, LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+        return jdbcTemplate.update(SEQUENCE_EVENTS, batchSize);
+    }
+}
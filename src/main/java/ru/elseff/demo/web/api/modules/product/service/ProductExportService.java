@@ -0,0 +1,119 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.elseff.demo.web.api.modules.product.dto.ProductExportFormat;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+
+/**
+ * Full catalog dump straight from a server-side cursor to the response. Rows are written as they
+ * are fetched, {@code app.export.fetch-size} at a time, so memory stays flat whatever the catalog size.
+ */
+@Service
+public class ProductExportService {
+
+    private static final String SELECT_PRODUCTS =
+            "select id, name, barcode, count_in_stock, price_value from products order by id";
+
+    private static final String CSV_HEADER = "id,name,barcode,countInStock,price\n";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.export.fetch-size:1000}")
+    private int fetchSize;
+
+    /**
+     * PostgreSQL only honours the fetch size inside a transaction, otherwise it reads the whole result.
+     */
+    @Transactional(readOnly = true)
+    public void export(ProductExportFormat format, OutputStream outputStream) throws IOException {
+        switch (format) {
+            case CSV:
+                exportCsv(outputStream);
+                break;
+            case NDJSON:
+                exportNdjson(outputStream);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported export format " + format);
+        }
+    }
+
+    private void exportCsv(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        query(resultSet -> {
+            try {
+                writer.write(Long.toString(resultSet.getLong(1)));
+                writer.write(',');
+                writeCsvValue(writer, resultSet.getString(2));
+                writer.write(',');
+                writer.write(Long.toString(resultSet.getLong(3)));
+                writer.write(',');
+                writer.write(Long.toString(resultSet.getLong(4)));
+                writer.write(',');
+                writer.write(Long.toString(resultSet.getLong(5)));
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private void exportNdjson(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.setRootValueSeparator(null);
+        query(resultSet -> {
+            try {
+                generator.writeStartObject();
+                generator.writeNumberField("id", resultSet.getLong(1));
+                generator.writeStringField("name", resultSet.getString(2));
+                generator.writeNumberField("barcode", resultSet.getLong(3));
+                generator.writeNumberField("countInStock", resultSet.getLong(4));
+                generator.writeNumberField("price", resultSet.getLong(5));
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.flush();
+    }
+
+    private void query(RowCallbackHandler rowCallbackHandler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_PRODUCTS);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rowCallbackHandler);
+    }
+
+    private static void writeCsvValue(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,81 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportErrorDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportJobDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportStatus;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress of one import, updated by the reader, validator and writer threads of the import.
+ */
+final class ProductImportJob {
+
+    private final UUID id = UUID.randomUUID();
+
+    private final Instant startedAt = Instant.now();
+
+    private final int maxReportedErrors;
+
+    private final AtomicLong rowsRead = new AtomicLong();
+
+    private final AtomicLong rowsImported = new AtomicLong();
+
+    private final AtomicLong rowsFailed = new AtomicLong();
+
+    private final List<ProductImportErrorDto> errors = new ArrayList<>();
+
+    private volatile ProductImportStatus status = ProductImportStatus.RUNNING;
+
+    private volatile Instant finishedAt;
+
+    ProductImportJob(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    UUID getId() {
+        return id;
+    }
+
+    boolean isRunning() {
+        return status == ProductImportStatus.RUNNING;
+    }
+
+    void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    void rowsImported(int count) {
+        rowsImported.addAndGet(count);
+    }
+
+    void rowFailed(long line, List<Violation> violations) {
+        rowsFailed.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new ProductImportErrorDto(line, violations));
+            }
+        }
+    }
+
+    void finish(ProductImportStatus status) {
+        if (isRunning()) {
+            this.finishedAt = Instant.now();
+            this.status = status;
+        }
+    }
+
+    ProductImportJobDto toDto() {
+        List<ProductImportErrorDto> reportedErrors;
+        synchronized (errors) {
+            reportedErrors = new ArrayList<>(errors);
+        }
+        return new ProductImportJobDto(id, status, rowsRead.get(), rowsImported.get(), rowsFailed.get(),
+                startedAt, finishedAt, reportedErrors);
+    }
+}
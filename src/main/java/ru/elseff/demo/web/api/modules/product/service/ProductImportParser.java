@@ -0,0 +1,201 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads an import body one line at a time, so only the current line is ever held in memory.
+ * Rows that cannot be turned into a {@link ProductDto} come back with the reason instead.
+ */
+abstract class ProductImportParser {
+
+    private final BufferedReader reader;
+
+    private long line;
+
+    private ProductImportParser(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * CSV with a header row naming the {@code name}, {@code barcode}, {@code countInStock}
+     * and {@code price} columns in any order, other columns are ignored.
+     */
+    static ProductImportParser csv(BufferedReader reader) {
+        return new Csv(reader);
+    }
+
+    /**
+     * One {@link ProductDto} JSON object per line.
+     */
+    static ProductImportParser ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+        return new Ndjson(reader, objectMapper);
+    }
+
+    /**
+     * The next non-blank row, or {@code null} at the end of the body.
+     */
+    Row next() {
+        String text = readLine();
+        while (text != null && text.isBlank()) {
+            text = readLine();
+        }
+        return text == null ? null : parse(line, text);
+    }
+
+    protected String readLine() {
+        try {
+            String text = reader.readLine();
+            if (text != null) {
+                line++;
+            }
+            return text;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    protected abstract Row parse(long line, String text);
+
+    static final class Row {
+
+        final long line;
+
+        final ProductDto product;
+
+        final Violation violation;
+
+        Row(long line, ProductDto product, Violation violation) {
+            this.line = line;
+            this.product = product;
+            this.violation = violation;
+        }
+    }
+
+    private static final class Csv extends ProductImportParser {
+
+        private static final String[] COLUMNS = {"name", "barcode", "countinstock", "price"};
+
+        private final int[] positions = new int[COLUMNS.length];
+
+        private Csv(BufferedReader reader) {
+            super(reader);
+            String header = readLine();
+            if (header == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV header row is missing");
+            }
+            List<String> names = split(header);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                positions[i] = indexOf(names, COLUMNS[i]);
+                if (positions[i] < 0) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV header has no " + COLUMNS[i] + " column");
+                }
+            }
+        }
+
+        @Override
+        protected Row parse(long line, String text) {
+            List<String> values = split(text);
+            ProductDto product = new ProductDto();
+            product.setName(value(values, positions[0]));
+            try {
+                product.setBarcode(number(value(values, positions[1])));
+            } catch (NumberFormatException e) {
+                return new Row(line, null, new Violation("barcode", "must be a number"));
+            }
+            try {
+                product.setCountInStock(number(value(values, positions[2])));
+            } catch (NumberFormatException e) {
+                return new Row(line, null, new Violation("countInStock", "must be a number"));
+            }
+            try {
+                product.setPrice(number(value(values, positions[3])));
+            } catch (NumberFormatException e) {
+                return new Row(line, null, new Violation("price", "must be a number"));
+            }
+            return new Row(line, product, null);
+        }
+
+        private static int indexOf(List<String> names, String column) {
+            for (int i = 0; i < names.size(); i++) {
+                if (names.get(i).trim().toLowerCase(Locale.ROOT).equals(column)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static String value(List<String> values, int position) {
+            if (position >= values.size()) {
+                return null;
+            }
+            String value = values.get(position).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        private static Long number(String value) {
+            return value == null ? null : Long.valueOf(value);
+        }
+
+        /**
+         * Splits on commas outside double quotes, {@code ""} inside quotes is a literal quote.
+         */
+        private static List<String> split(String text) {
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c != '"') {
+                        value.append(c);
+                    } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            values.add(value.toString());
+            return values;
+        }
+    }
+
+    private static final class Ndjson extends ProductImportParser {
+
+        private final ObjectMapper objectMapper;
+
+        private Ndjson(BufferedReader reader, ObjectMapper objectMapper) {
+            super(reader);
+            this.objectMapper = objectMapper;
+        }
+
+        @Override
+        protected Row parse(long line, String text) {
+            try {
+                return new Row(line, objectMapper.readValue(text, ProductDto.class), null);
+            } catch (JsonProcessingException e) {
+                return new Row(line, null, new Violation("product", "is not a valid product JSON object"));
+            }
+        }
+    }
+}
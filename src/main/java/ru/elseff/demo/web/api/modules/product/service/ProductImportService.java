@@ -0,0 +1,320 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportJobDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportStatus;
+import ru.elseff.demo.web.api.modules.product.validation.ProductValidator;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.PersistenceException;
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Streams an import body through three stages joined by bounded queues: the calling thread parses
+ * rows into chunks, {@code app.import.validation-threads} workers check them against the
+ * {@link ProductDto} constraints, and a single writer inserts the valid ones in transactions of
+ * {@code app.import.batch-size} rows. A full queue blocks the stage before it, so a slow database
+ * slows down reading the body instead of buffering it.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    private static final List<ProductImportParser.Row> END = Collections.emptyList();
+
+    private static final long QUEUE_TIMEOUT_MILLIS = 100;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductValidator productValidator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.import.validation-threads:2}")
+    private int validationThreads;
+
+    @Value("${app.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.import.queue-capacity:4}")
+    private int queueCapacity;
+
+    @Value("${app.import.max-concurrent-jobs:2}")
+    private int maxConcurrentJobs;
+
+    @Value("${app.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Value("${app.import.retained-jobs:100}")
+    private int retainedJobs;
+
+    private Semaphore permits;
+
+    private final Map<UUID, ProductImportJob> jobs = Collections.synchronizedMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ProductImportJob> eldest) {
+            return size() > retainedJobs && !eldest.getValue().isRunning();
+        }
+    });
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(maxConcurrentJobs);
+    }
+
+    /**
+     * Imports the CSV {@code body} and returns the final report. {@code onStarted} gets the job id
+     * once the header is read, before any row is.
+     */
+    public ProductImportJobDto importCsv(InputStream body, Consumer<UUID> onStarted) {
+        return run(reader -> ProductImportParser.csv(reader), body, onStarted);
+    }
+
+    public ProductImportJobDto importNdjson(InputStream body, Consumer<UUID> onStarted) {
+        return run(reader -> ProductImportParser.ndjson(reader, objectMapper), body, onStarted);
+    }
+
+    public ProductImportJobDto getJob(UUID id) {
+        ProductImportJob job = jobs.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find import with id " + id);
+        }
+        return job.toDto();
+    }
+
+    /**
+     * Retained imports, the most recently started first.
+     */
+    public List<ProductImportJobDto> getJobs() {
+        List<ProductImportJob> snapshot;
+        synchronized (jobs) {
+            snapshot = new ArrayList<>(jobs.values());
+        }
+        return snapshot.stream()
+                .map(ProductImportJob::toDto)
+                .sorted(Comparator.comparing(ProductImportJobDto::getStartedAt).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private ProductImportJobDto run(Function<BufferedReader, ProductImportParser> parserFactory, InputStream body,
+                                   Consumer<UUID> onStarted) {
+        if (!permits.tryAcquire()) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many imports are running, retry later");
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+            ProductImportParser parser = parserFactory.apply(reader);
+            ProductImportJob job = new ProductImportJob(maxReportedErrors);
+            jobs.put(job.getId(), job);
+            onStarted.accept(job.getId());
+            new Pipeline(job).run(parser);
+            return job.toDto();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private final class Pipeline {
+
+        private final ProductImportJob job;
+
+        private final BlockingQueue<List<ProductImportParser.Row>> validationQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        private final BlockingQueue<List<ProductImportParser.Row>> writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+
+        private volatile boolean aborted;
+
+        private Pipeline(ProductImportJob job) {
+            this.job = job;
+        }
+
+        void run(ProductImportParser parser) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(validationThreads + 1, runnable -> {
+                Thread thread = new Thread(runnable, "product-import-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                List<Future<?>> stages = new ArrayList<>(validationThreads + 1);
+                for (int i = 0; i < validationThreads; i++) {
+                    stages.add(executor.submit(() -> abortOnFailure(this::validate)));
+                }
+                stages.add(executor.submit(() -> abortOnFailure(this::write)));
+                read(parser);
+                for (Future<?> stage : stages) {
+                    stage.get();
+                }
+                job.finish(ProductImportStatus.COMPLETED);
+            } catch (Exception e) {
+                aborted = true;
+                job.finish(ProductImportStatus.FAILED);
+                log.warn("Import {} failed", job.getId(), e);
+                if (e instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        /**
+         * Makes the other stages give up instead of waiting on a queue nobody serves anymore.
+         */
+        private Void abortOnFailure(Callable<Void> stage) throws Exception {
+            try {
+                return stage.call();
+            } catch (Exception | Error e) {
+                aborted = true;
+                throw e;
+            }
+        }
+
+        private void read(ProductImportParser parser) throws InterruptedException {
+            List<ProductImportParser.Row> chunk = new ArrayList<>(chunkSize);
+            for (ProductImportParser.Row row = parser.next(); row != null; row = parser.next()) {
+                job.rowRead();
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    put(validationQueue, chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                put(validationQueue, chunk);
+            }
+            for (int i = 0; i < validationThreads; i++) {
+                put(validationQueue, END);
+            }
+        }
+
+        private Void validate() throws InterruptedException {
+            for (List<ProductImportParser.Row> chunk = take(validationQueue); chunk != END; chunk = take(validationQueue)) {
+                List<ProductImportParser.Row> valid = new ArrayList<>(chunk.size());
+                for (ProductImportParser.Row row : chunk) {
+                    List<Violation> violations = row.violation != null
+                            ? List.of(row.violation)
+                            : productValidator.validate(row.product);
+                    if (violations.isEmpty()) {
+                        valid.add(row);
+                    } else {
+                        job.rowFailed(row.line, violations);
+                    }
+                }
+                if (!valid.isEmpty()) {
+                    put(writeQueue, valid);
+                }
+            }
+            put(writeQueue, END);
+            return null;
+        }
+
+        private Void write() throws InterruptedException {
+            List<ProductImportParser.Row> batch = new ArrayList<>(batchSize);
+            int running = validationThreads;
+            while (running > 0) {
+                List<ProductImportParser.Row> chunk = take(writeQueue);
+                if (chunk == END) {
+                    running--;
+                    continue;
+                }
+                batch.addAll(chunk);
+                if (batch.size() >= batchSize) {
+                    insert(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                insert(batch);
+            }
+            return null;
+        }
+
+        /**
+         * Inserts the batch in one transaction, or row by row when it conflicts with existing
+         * products, so one duplicate barcode only rejects its own row.
+         */
+        private void insert(List<ProductImportParser.Row> batch) {
+            try {
+                productService.addProducts(batch.stream().map(row -> row.product).collect(Collectors.toList()));
+                job.rowsImported(batch.size());
+            } catch (DataIntegrityViolationException | PersistenceException e) {
+                for (ProductImportParser.Row row : batch) {
+                    try {
+                        productService.addProduct(row.product);
+                        job.rowsImported(1);
+                    } catch (DataIntegrityViolationException rowException) {
+                        job.rowFailed(row.line, List.of(conflict(rowException)));
+                    }
+                }
+            }
+        }
+
+        private Violation conflict(DataIntegrityViolationException e) {
+            String cause = String.valueOf(e.getMostSpecificCause().getMessage());
+            return cause.contains("products_barcode_uindex")
+                    ? new Violation("barcode", "must be unique")
+                    : new Violation("product", "conflicts with existing data");
+        }
+
+        private void put(BlockingQueue<List<ProductImportParser.Row>> queue, List<ProductImportParser.Row> chunk)
+                throws InterruptedException {
+            while (!queue.offer(chunk, QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkAborted();
+            }
+        }
+
+        private List<ProductImportParser.Row> take(BlockingQueue<List<ProductImportParser.Row>> queue)
+                throws InterruptedException {
+            List<ProductImportParser.Row> chunk = queue.poll(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            while (chunk == null) {
+                checkAborted();
+                chunk = queue.poll(QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            return chunk;
+        }
+
+        private void checkAborted() throws InterruptedException {
+            if (aborted) {
+                throw new InterruptedException("Import " + job.getId() + " was aborted");
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import javax.annotation.PostConstruct;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * UTF-8 JSON of products as it goes on the wire. A product is rendered once per version, and the
+ * whole catalog once per catalog version, so unchanged products are never mapped or serialized again.
+ * Entries are keyed by version, an entry for an older version is simply rendered over.
+ */
+@Component
+public class ProductJsonCache {
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.json-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.json-cache.maximum-size:100000}")
+    private long maximumSize;
+
+    private ObjectWriter writer;
+
+    private Cache<Long, Rendered> products;
+
+    private final AtomicReference<RenderedCatalog> catalog = new AtomicReference<>();
+
+    @PostConstruct
+    void init() {
+        writer = objectMapper.writerFor(ProductDto.class);
+        products = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, products, "product.json");
+    }
+
+    public byte[] render(ProductDto productDto) {
+        if (!enabled || productDto.getVersion() == null) {
+            return serialize(productDto);
+        }
+        long version = productDto.getVersion();
+        Rendered rendered = products.getIfPresent(productDto.getId());
+        if (rendered == null || rendered.version != version) {
+            rendered = new Rendered(version, serialize(productDto));
+            products.put(productDto.getId(), rendered);
+        }
+        return rendered.json;
+    }
+
+    /**
+     * The JSON array of the catalog at {@code catalogVersion}, reading it from {@code catalog}
+     * only when that version has not been rendered yet.
+     */
+    public byte[] renderCatalog(String catalogVersion, Supplier<List<ProductDto>> catalog) {
+        RenderedCatalog rendered = this.catalog.get();
+        if (enabled && rendered != null && rendered.version.equals(catalogVersion)) {
+            return rendered.json;
+        }
+        byte[] json = renderList(catalog.get());
+        if (enabled) {
+            this.catalog.set(new RenderedCatalog(catalogVersion, json));
+        }
+        return json;
+    }
+
+    public void evict(Long id) {
+        products.invalidate(id);
+    }
+
+    /**
+     * Concatenates the rendered products, sized up front so the array is filled in one pass.
+     */
+    private byte[] renderList(List<ProductDto> productDtos) {
+        if (productDtos.isEmpty()) {
+            return EMPTY_ARRAY;
+        }
+        byte[][] fragments = new byte[productDtos.size()][];
+        int length = 1 + productDtos.size();
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = render(productDtos.get(i));
+            length += fragments[i].length;
+        }
+        byte[] json = new byte[length];
+        json[0] = '[';
+        int position = 1;
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) {
+                json[position++] = ',';
+            }
+            System.arraycopy(fragments[i], 0, json, position, fragments[i].length);
+            position += fragments[i].length;
+        }
+        json[position] = ']';
+        return json;
+    }
+
+    private byte[] serialize(ProductDto productDto) {
+        try {
+            return writer.writeValueAsBytes(productDto);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Rendered {
+
+        private final long version;
+
+        private final byte[] json;
+
+        private Rendered(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private static final class RenderedCatalog {
+
+        private final String version;
+
+        private final byte[] json;
+
+        private RenderedCatalog(String version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+}
@@ -1,66 +1,478 @@
 package ru.elseff.demo.web.api.modules.product.service;
 
-import org.modelmapper.ModelMapper;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.web.server.ResponseStatusException;
-import ru.elseff.demo.persistense.Price;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.elseff.demo.exception.ProductNotFoundException;
+import ru.elseff.demo.exception.ProductStatusException;
 import ru.elseff.demo.persistense.Product;
 import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.persistense.routing.ReadYourWrites;
+import ru.elseff.demo.web.api.modules.product.dto.ProductBatchUpdateDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductPageDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSearchDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static ru.elseff.demo.config.CacheConfig.PRODUCTS_CACHE;
 
 @Service
+@Timed(value = "product.service", histogram = true)
 public class ProductService {
+
     @Autowired
     private ProductRepository productRepository;
 
     @Autowired
-    private ModelMapper modelMapper;
+    private ProductMapper productMapper;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private BarcodeIndex barcodeIndex;
+
+    @Autowired
+    private ProductBatchLoader productBatchLoader;
+
+    @Autowired
+    private ProductJsonCache productJsonCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    public String getCatalogVersion() {
+        return productRepository.findCatalogVersion();
+    }
+
+    public List<ProductDto> getAll() {
+        List<ProductDto> products = productRepository.findAllProjected();
+        meterRegistry.summary("product.service.rows", "method", "getAll").record(products.size());
+        return products;
+    }
+
+    /**
+     * The catalog as a rendered JSON array, unchanged products are not serialized again.
+     */
+    public byte[] getAllJson(String catalogVersion) {
+        return productJsonCache.renderCatalog(catalogVersion, this::getAll);
+    }
+
+    public byte[] toJson(ProductDto productDto) {
+        return productJsonCache.render(productDto);
+    }
 
-    public List<Product> getAll() {
-        return productRepository.findAll();
+    public List<ProductDto> getPage(Long after, int limit) {
+        return productRepository.findProjectedPage(after == null ? 0L : after, Pageable.ofSize(limit));
     }
 
-    public Product getSpecific(Long id) {
-        return productRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find product with id " + id));
+    /**
+     * One page of products matching {@code search}, {@code after} is the {@code nextCursor}
+     * of the previous page.
+     */
+    public ProductPageDto search(ProductSearchDto search, String after, int limit) {
+        SearchCursor cursor = after == null ? null : SearchCursor.decode(search.getSort(), after);
+        List<ProductDto> products = productRepository.search(search,
+                cursor == null ? null : cursor.getKey(),
+                cursor == null ? null : cursor.getId(),
+                limit);
+        String nextCursor = products.size() < limit
+                ? null
+                : SearchCursor.encode(search.getSort(), products.get(products.size() - 1));
+        return new ProductPageDto(products, nextCursor);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<ProductDto> consumer) {
+        try (Stream<ProductDto> products = productRepository.streamAll()) {
+            products.forEach(consumer);
+        }
+    }
+
+    /**
+     * Concurrent misses for the same id wait for a single database read instead of stampeding,
+     * misses for different ids are coalesced by the {@link ProductBatchLoader}.
+     * <p>
+     * The 404 is thrown once the cache has answered, an exception thrown from inside the cache would
+     * come out wrapped into exceptions with stack traces. An unknown id is not kept in the cache,
+     * the product may be created by another instance.
+     */
+    public ProductDto getSpecific(Long id) {
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        ProductDto productDto = cache == null
+                ? productBatchLoader.load(id).orElse(null)
+                : cache.get(id, () -> productBatchLoader.load(id).orElse(null));
+        if (productDto == null) {
+            if (cache != null) {
+                cache.evict(id);
+            }
+            throw notFound(ProductNotFoundException.byId(id));
+        }
+        return productDto;
+    }
+
+    /**
+     * Products with the given ids in the order asked for, unknown ids are skipped.
+     * Cached products are taken from the cache, the rest is read in one query.
+     */
+    public List<ProductDto> getByIds(List<Long> ids) {
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        Map<Long, ProductDto> products = new HashMap<>();
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Cache.ValueWrapper cached = cache == null ? null : cache.get(id);
+            if (cached != null) {
+                products.put(id, (ProductDto) cached.get());
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (ProductDto productDto : productRepository.findProjectedByIdIn(misses)) {
+                products.put(productDto.getId(), productDto);
+                if (cache != null) {
+                    cache.putIfAbsent(productDto.getId(), productDto);
+                }
+            }
+        }
+        List<ProductDto> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductDto productDto = products.get(id);
+            if (productDto != null) {
+                ordered.add(productDto);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Resolves the barcode through the in-memory index and the product cache,
+     * falling back to the natural id cache and the database when the index misses or points to a stale product.
+     */
+    public ProductDto getByBarcode(Long barcode) {
+        ProductDto productDto = findIndexed(barcode);
+        if (productDto != null) {
+            return productDto;
+        }
+        productDto = productRepository.findByNaturalId(barcode)
+                .orElseThrow(() -> notFound(ProductNotFoundException.byBarcode(barcode)));
+        remember(productDto);
+        return productDto;
+    }
+
+    /**
+     * Same as {@link #getByBarcode(Long)} for many barcodes at once, unknown barcodes are skipped.
+     */
+    public List<ProductDto> getByBarcodes(List<Long> barcodes) {
+        List<ProductDto> products = new ArrayList<>(barcodes.size());
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long barcode : barcodes) {
+            ProductDto productDto = findIndexed(barcode);
+            if (productDto != null) {
+                products.add(productDto);
+            } else {
+                misses.add(barcode);
+            }
+        }
+        if (!misses.isEmpty()) {
+            for (ProductDto productDto : productRepository.findProjectedByBarcodeIn(misses)) {
+                remember(productDto);
+                products.add(productDto);
+            }
+        }
+        return products;
     }
 
     public Product addProduct(ProductDto productDto) {
-        Product product = modelMapper.map(productDto, Product.class);
-        Price price = new Price(productDto.getPrice());
-        price.setProduct(product);
-        product.setPrice(price);
-        return productRepository.save(product);
+        Product product = productRepository.save(productMapper.toEntity(productDto));
+        readYourWrites.recordWrite();
+        barcodeIndex.put(product.getBarcode(), product.getId());
+        return product;
     }
 
+    /**
+     * Persists products in JDBC batches of {@code hibernate.jdbc.batch_size},
+     * clearing the persistence context after every chunk.
+     */
+    @Transactional
+    public List<Product> addProducts(List<ProductDto> productDtos) {
+        readYourWrites.recordWrite();
+        List<Product> products = new ArrayList<>(productDtos.size());
+        for (ProductDto productDto : productDtos) {
+            Product product = productMapper.toEntity(productDto);
+            entityManager.persist(product);
+            products.add(product);
+            if (products.size() % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        afterCommit(() -> products.forEach(product -> barcodeIndex.put(product.getBarcode(), product.getId())));
+        return products;
+    }
 
-    public Product updateProduct(Long id, ProductUpdateDto productUpdateDto) {
-        Product productFromDb = productRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find product with id " + id));
+    /**
+     * A single {@code UPDATE ... RETURNING} of the fields that are set, the product is never loaded.
+     */
+    @CacheEvict(cacheNames = PRODUCTS_CACHE, key = "#id")
+    public ProductDto updateProduct(Long id, ProductUpdateDto productUpdateDto) {
+        return updateProduct(id, null, productUpdateDto);
+    }
 
-        if (productUpdateDto.getName() != null) {
-            productFromDb.setName(productUpdateDto.getName());
+    /**
+     * Same as {@link #updateProduct(Long, ProductUpdateDto)}, but only while the product is still
+     * at {@code expectedVersion}, {@code null} updates any version.
+     */
+    @CacheEvict(cacheNames = PRODUCTS_CACHE, key = "#id")
+    public ProductDto updateProduct(Long id, Long expectedVersion, ProductUpdateDto productUpdateDto) {
+        if (isEmpty(productUpdateDto)) {
+            ProductDto productDto = productRepository.findProjectedById(id)
+                    .orElseThrow(() -> notFound(ProductNotFoundException.byId(id)));
+            checkVersion(id, productDto.getVersion(), expectedVersion);
+            return productDto;
         }
-        if (productUpdateDto.getPrice() != null) {
-            productFromDb.getPrice().setValue(productUpdateDto.getPrice());
+        ProductDto productDto = productRepository.patch(id, expectedVersion, productUpdateDto)
+                .orElseThrow(() -> writeMissed(id, expectedVersion));
+        readYourWrites.recordWrite();
+        productJsonCache.evict(id);
+        barcodeIndex.put(productDto.getBarcode(), productDto.getId());
+        return productDto;
+    }
+
+    @Transactional
+    public List<Product> updateProducts(List<ProductBatchUpdateDto> productUpdateDtos) {
+        readYourWrites.recordWrite();
+        List<Product> products = new ArrayList<>(productUpdateDtos.size());
+        Map<Long, Long> oldBarcodes = new HashMap<>();
+        for (List<ProductBatchUpdateDto> chunk : chunks(productUpdateDtos)) {
+            Set<Long> ids = chunk.stream().map(ProductBatchUpdateDto::getId).collect(Collectors.toSet());
+            Map<Long, Product> productsFromDb = productRepository.findAllById(ids).stream()
+                    .collect(Collectors.toMap(Product::getId, Function.identity()));
+            throwIfMissing(ids, productsFromDb.keySet());
+
+            for (ProductBatchUpdateDto productUpdateDto : chunk) {
+                Product product = productsFromDb.get(productUpdateDto.getId());
+                oldBarcodes.putIfAbsent(product.getId(), product.getBarcode());
+                productMapper.update(productUpdateDto, product);
+                products.add(product);
+            }
+            entityManager.flush();
+            entityManager.clear();
         }
-        if (productUpdateDto.getBarcode() != null) {
-            productFromDb.setBarcode(productUpdateDto.getBarcode());
+        afterCommit(() -> products.forEach(product -> {
+            evict(product.getId());
+            reindex(oldBarcodes.get(product.getId()), product);
+        }));
+        return products;
+    }
+
+    /**
+     * Atomically takes {@code quantity} off the stock, never letting it go below zero
+     * however many instances reserve the same product concurrently.
+     */
+    @Transactional
+    public void reserveStock(Long id, Long quantity) {
+        if (productRepository.reserveStock(id, quantity) == 0) {
+            if (!productRepository.existsById(id)) {
+                throw notFound(ProductNotFoundException.byId(id));
+            }
+            throw ProductStatusException.outOfStock(id);
         }
-        if (productUpdateDto.getCountInStock() != null) {
-            productFromDb.setCountInStock(productUpdateDto.getCountInStock());
+        readYourWrites.recordWrite();
+        afterCommit(() -> evict(id));
+    }
+
+    @Transactional
+    public void releaseStock(Long id, Long quantity) {
+        if (productRepository.releaseStock(id, quantity) == 0) {
+            throw notFound(ProductNotFoundException.byId(id));
         }
-        return productRepository.save(productFromDb);
+        readYourWrites.recordWrite();
+        afterCommit(() -> evict(id));
     }
 
+    @CacheEvict(cacheNames = PRODUCTS_CACHE, key = "#id")
     public void deleteProduct(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find product with id " + id));
-        productRepository.delete(product);
+        deleteProduct(id, null);
+    }
+
+    /**
+     * A single {@code DELETE ... RETURNING}, whether the product existed is told by the affected rows.
+     */
+    @CacheEvict(cacheNames = PRODUCTS_CACHE, key = "#id")
+    public void deleteProduct(Long id, Long expectedVersion) {
+        Long barcode = productRepository.deleteReturningBarcode(id, expectedVersion)
+                .orElseThrow(() -> writeMissed(id, expectedVersion));
+        readYourWrites.recordWrite();
+        productJsonCache.evict(id);
+        barcodeIndex.remove(barcode);
+    }
+
+    @Transactional
+    public void deleteProducts(List<Long> ids) {
+        readYourWrites.recordWrite();
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        for (List<Long> chunk : chunks(new ArrayList<>(distinctIds))) {
+            throwIfMissing(chunk, productRepository.findExistingIds(chunk));
+            productRepository.deleteByIdIn(chunk);
+        }
+        afterCommit(() -> {
+            distinctIds.forEach(this::evict);
+            barcodeIndex.removeIds(distinctIds);
+        });
+    }
+
+    /**
+     * Drops products changed through another instance, see {@link ProductCacheInvalidator}.
+     */
+    public void evictProducts(Collection<Long> ids) {
+        ids.forEach(this::evict);
+    }
+
+    public void evictAllProducts() {
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    private static boolean isEmpty(ProductUpdateDto productUpdateDto) {
+        return productUpdateDto.getName() == null
+                && productUpdateDto.getBarcode() == null
+                && productUpdateDto.getCountInStock() == null
+                && productUpdateDto.getPrice() == null;
+    }
+
+    /**
+     * Tells a missing product from a version mismatch once a conditional write touched no rows,
+     * the extra read only happens on this failure path.
+     */
+    private ProductStatusException writeMissed(Long id, Long expectedVersion) {
+        if (expectedVersion != null) {
+            Optional<ProductDto> current = productRepository.findProjectedById(id);
+            if (current.isPresent()) {
+                return ProductStatusException.versionMismatch(id, current.get().getVersion());
+            }
+        }
+        return notFound(ProductNotFoundException.byId(id));
+    }
+
+    private void checkVersion(Long id, Long version, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(version)) {
+            throw ProductStatusException.versionMismatch(id, version);
+        }
+    }
+
+    private ProductDto findIndexed(Long barcode) {
+        long id = barcodeIndex.find(barcode);
+        if (id == BarcodeIndex.NOT_FOUND) {
+            return null;
+        }
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        Cache.ValueWrapper cached = cache == null ? null : cache.get(id);
+        ProductDto productDto = cached != null
+                ? (ProductDto) cached.get()
+                : productRepository.findProjectedById(id).orElse(null);
+        if (productDto == null || !barcode.equals(productDto.getBarcode())) {
+            barcodeIndex.remove(barcode);
+            return null;
+        }
+        if (cached == null && cache != null) {
+            cache.put(id, productDto);
+        }
+        return productDto;
+    }
+
+    private void remember(ProductDto productDto) {
+        barcodeIndex.put(productDto.getBarcode(), productDto.getId());
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        if (cache != null) {
+            cache.putIfAbsent(productDto.getId(), productDto);
+        }
+    }
+
+    private void reindex(Long oldBarcode, Product product) {
+        if (oldBarcode != null && !oldBarcode.equals(product.getBarcode())) {
+            barcodeIndex.remove(oldBarcode);
+        }
+        barcodeIndex.put(product.getBarcode(), product.getId());
+    }
+
+    private void evict(Long id) {
+        productJsonCache.evict(id);
+        Cache cache = cacheManager.getCache(PRODUCTS_CACHE);
+        if (cache != null) {
+            cache.evict(id);
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private ProductNotFoundException notFound(ProductNotFoundException exception) {
+        meterRegistry.counter("product.not.found").increment();
+        return exception;
+    }
+
+    private <T> List<List<T>> chunks(List<T> items) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            chunks.add(items.subList(from, Math.min(from + batchSize, items.size())));
+        }
+        return chunks;
+    }
+
+    private void throwIfMissing(Iterable<Long> requestedIds, Iterable<Long> foundIds) {
+        Set<Long> missingIds = new HashSet<>();
+        requestedIds.forEach(missingIds::add);
+        foundIds.forEach(missingIds::remove);
+        if (!missingIds.isEmpty()) {
+            throw notFound(ProductNotFoundException.byIds(missingIds));
+        }
     }
 }
@@ -0,0 +1,52 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of the product search: the sort key and id of the last product on a page,
+ * handed to clients as an opaque url-safe string.
+ */
+@Getter
+@AllArgsConstructor
+final class SearchCursor {
+
+    private static final char SEPARATOR = ':';
+
+    private final Comparable<?> key;
+
+    private final Long id;
+
+    static String encode(ProductSort sort, ProductDto productDto) {
+        String position = sort == ProductSort.ID
+                ? String.valueOf(productDto.getId())
+                : String.valueOf(key(sort, productDto)) + SEPARATOR + productDto.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static SearchCursor decode(ProductSort sort, String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (sort == ProductSort.ID) {
+                return new SearchCursor(null, Long.parseLong(position));
+            }
+            int separator = position.lastIndexOf(SEPARATOR);
+            String key = position.substring(0, separator);
+            Long id = Long.parseLong(position.substring(separator + 1));
+            return new SearchCursor(sort == ProductSort.NAME ? key : Long.valueOf(key), id);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor " + cursor);
+        }
+    }
+
+    private static Comparable<?> key(ProductSort sort, ProductDto productDto) {
+        return sort == ProductSort.NAME ? productDto.getName() : productDto.getPrice();
+    }
+}
@@ -0,0 +1,116 @@
+package ru.elseff.demo.web.api.modules.product.validation;
+
+import org.springframework.stereotype.Component;
+import ru.elseff.demo.exception.ProductValidationException;
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The constraints declared on {@link ProductDto} and {@link ProductUpdateDto}, checked by plain code
+ * instead of Bean Validation metadata lookups. Violations are shared constants with the messages
+ * Bean Validation would produce; keep both in sync when a constraint changes.
+ */
+@Component
+public class ProductValidator {
+
+    private static final int NAME_MIN_LENGTH = 3;
+
+    private static final int NAME_MAX_LENGTH = 255;
+
+    private static final Pattern NAME_PATTERN = Pattern.compile("[A-Z][a-zA-Z]*");
+
+    private static final Violation ID_NOT_NULL = new Violation("id", "must be null");
+
+    private static final Violation NAME_NULL = new Violation("name", "must not be null");
+
+    private static final Violation NAME_SIZE = new Violation("name",
+            "size must be between " + NAME_MIN_LENGTH + " and " + NAME_MAX_LENGTH);
+
+    private static final Violation NAME_INVALID = new Violation("name", "name should be valid");
+
+    private static final Violation BARCODE_NULL = new Violation("barcode", "must not be null");
+
+    private static final Violation BARCODE_NOT_POSITIVE = new Violation("barcode", "must be greater than 0");
+
+    private static final Violation COUNT_IN_STOCK_NULL = new Violation("countInStock", "must not be null");
+
+    private static final Violation COUNT_IN_STOCK_NOT_POSITIVE = new Violation("countInStock", "must be greater than 0");
+
+    private static final Violation PRICE_NULL = new Violation("price", "must not be null");
+
+    private static final Violation PRICE_NOT_POSITIVE = new Violation("price", "must be greater than 0");
+
+    /**
+     * Violations of the {@link ProductDto} constraints, an empty list when there are none.
+     */
+    public List<Violation> validate(ProductDto productDto) {
+        List<Violation> violations = null;
+        if (productDto.getId() != null) {
+            violations = add(violations, ID_NOT_NULL);
+        }
+        violations = name(violations, productDto.getName(), true);
+        violations = positive(violations, productDto.getBarcode(), BARCODE_NULL, BARCODE_NOT_POSITIVE);
+        violations = positive(violations, productDto.getCountInStock(), COUNT_IN_STOCK_NULL, COUNT_IN_STOCK_NOT_POSITIVE);
+        violations = positive(violations, productDto.getPrice(), PRICE_NULL, PRICE_NOT_POSITIVE);
+        return violations == null ? List.of() : violations;
+    }
+
+    /**
+     * Violations of the {@link ProductUpdateDto} constraints, absent fields are left as they are.
+     */
+    public List<Violation> validate(ProductUpdateDto productUpdateDto) {
+        List<Violation> violations = null;
+        violations = name(violations, productUpdateDto.getName(), false);
+        violations = positive(violations, productUpdateDto.getBarcode(), null, BARCODE_NOT_POSITIVE);
+        violations = positive(violations, productUpdateDto.getCountInStock(), null, COUNT_IN_STOCK_NOT_POSITIVE);
+        violations = positive(violations, productUpdateDto.getPrice(), null, PRICE_NOT_POSITIVE);
+        return violations == null ? List.of() : violations;
+    }
+
+    public void requireValid(ProductDto productDto) {
+        throwIfInvalid(validate(productDto));
+    }
+
+    public void requireValid(ProductUpdateDto productUpdateDto) {
+        throwIfInvalid(validate(productUpdateDto));
+    }
+
+    private static void throwIfInvalid(List<Violation> violations) {
+        if (!violations.isEmpty()) {
+            throw new ProductValidationException(violations);
+        }
+    }
+
+    private static List<Violation> name(List<Violation> violations, String name, boolean required) {
+        if (name == null) {
+            return required ? add(violations, NAME_NULL) : violations;
+        }
+        if (name.length() < NAME_MIN_LENGTH || name.length() > NAME_MAX_LENGTH) {
+            violations = add(violations, NAME_SIZE);
+        }
+        if (!NAME_PATTERN.matcher(name).matches()) {
+            violations = add(violations, NAME_INVALID);
+        }
+        return violations;
+    }
+
+    private static List<Violation> positive(List<Violation> violations, Long value, Violation whenNull, Violation whenNotPositive) {
+        if (value == null) {
+            return whenNull == null ? violations : add(violations, whenNull);
+        }
+        return value > 0 ? violations : add(violations, whenNotPositive);
+    }
+
+    private static List<Violation> add(List<Violation> violations, Violation violation) {
+        if (violations == null) {
+            violations = new ArrayList<>(2);
+        }
+        violations.add(violation);
+        return violations;
+    }
+}
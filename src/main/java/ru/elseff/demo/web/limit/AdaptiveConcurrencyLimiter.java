@@ -0,0 +1,111 @@
+package ru.elseff.demo.web.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit on the requests an endpoint serves at once, adjusted after every {@code window} completed
+ * requests. The limit shrinks in proportion once the average latency of a window exceeds
+ * {@code tolerance} times the best average seen, and grows by about its square root while latency
+ * is fine and the limit is actually reached. The best average slowly follows a lasting change,
+ * so a permanently slower database does not keep the limit at its minimum.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final double BASELINE_DRIFT = 0.01;
+
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final int window;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final AtomicLong windowLatencyNanos = new AtomicLong();
+
+    private final AtomicInteger windowSamples = new AtomicInteger();
+
+    private final AtomicInteger windowMaxInflight = new AtomicInteger();
+
+    private volatile int limit;
+
+    private double baselineNanos = Double.NaN;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, int window) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.window = window;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                windowMaxInflight.accumulateAndGet(current + 1, Math::max);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a request that completed in {@code latencyNanos}.
+     */
+    public void release(long latencyNanos) {
+        inflight.decrementAndGet();
+        windowLatencyNanos.addAndGet(latencyNanos);
+        if (windowSamples.incrementAndGet() >= window) {
+            adjust();
+        }
+    }
+
+    /**
+     * Releases a request without taking its latency into account, e.g. one continuing asynchronously.
+     */
+    public void release() {
+        inflight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    private synchronized void adjust() {
+        int samples = windowSamples.get();
+        if (samples < window) {
+            return;
+        }
+        windowSamples.addAndGet(-samples);
+        double average = (double) windowLatencyNanos.getAndSet(0) / samples;
+        int maxInflight = windowMaxInflight.getAndSet(inflight.get());
+        if (Double.isNaN(baselineNanos) || average < baselineNanos) {
+            baselineNanos = average;
+        } else {
+            baselineNanos += (average - baselineNanos) * BASELINE_DRIFT;
+        }
+        double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, tolerance * baselineNanos / average));
+        int current = limit;
+        int next;
+        if (gradient < 1.0) {
+            next = (int) (current * gradient);
+        } else if (maxInflight >= current) {
+            next = current + Math.max(1, (int) Math.sqrt(current));
+        } else {
+            next = current;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
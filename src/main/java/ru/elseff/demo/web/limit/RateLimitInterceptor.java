@@ -0,0 +1,187 @@
+package ru.elseff.demo.web.limit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admission control in front of the API. A request first takes a token from the bucket of its
+ * client and from the global bucket, answering 429 when either is empty, then a slot of the
+ * {@link AdaptiveConcurrencyLimiter} of its endpoint, answering 503 when the endpoint is at its limit.
+ * <p>
+ * Clients are told apart by remote address, a header the client sets itself would let it take a
+ * fresh bucket with every request. Behind a proxy, {@code server.forward-headers-strategy=native}
+ * takes the address from {@code X-Forwarded-For}, but only when the proxy is one of
+ * {@code server.tomcat.remoteip.internal-proxies}.
+ * <p>
+ * Long polls give their slot back when the async part starts, they hold no database connection
+ * while they wait. Streamed responses keep theirs until the last byte is written.
+ */
+@Component
+public class RateLimitInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String LIMITER_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".limiter";
+
+    private static final String STARTED_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".started";
+
+    private static final byte[] TOO_MANY_REQUESTS = "{\"message\":\"Too many requests, retry later\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] OVERLOADED = "{\"message\":\"Service is overloaded, retry later\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    @Value("${app.rate-limit.client-rate:200}")
+    private double clientRate;
+
+    @Value("${app.rate-limit.client-burst:400}")
+    private long clientBurst;
+
+    @Value("${app.rate-limit.max-clients:100000}")
+    private long maxClients;
+
+    @Value("${app.rate-limit.global-rate:5000}")
+    private double globalRate;
+
+    @Value("${app.rate-limit.global-burst:10000}")
+    private long globalBurst;
+
+    @Value("${app.concurrency-limit.enabled:true}")
+    private boolean concurrencyLimitEnabled;
+
+    @Value("${app.concurrency-limit.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${app.concurrency-limit.min-limit:2}")
+    private int minLimit;
+
+    @Value("${app.concurrency-limit.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${app.concurrency-limit.tolerance:2.0}")
+    private double tolerance;
+
+    @Value("${app.concurrency-limit.window:100}")
+    private int window;
+
+    private TokenBucket globalBucket;
+
+    private Cache<String, TokenBucket> clientBuckets;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        globalBucket = new TokenBucket(globalRate, globalBurst);
+        clientBuckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC || !(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        String endpoint = endpoint((HandlerMethod) handler);
+        if (rateLimitEnabled) {
+            if (!clientBucket(request).tryAcquire()) {
+                return reject(response, HttpStatus.TOO_MANY_REQUESTS, TOO_MANY_REQUESTS, "client", endpoint);
+            }
+            if (!globalBucket.tryAcquire()) {
+                return reject(response, HttpStatus.TOO_MANY_REQUESTS, TOO_MANY_REQUESTS, "global", endpoint);
+            }
+        }
+        if (concurrencyLimitEnabled) {
+            AdaptiveConcurrencyLimiter limiter = limiters.computeIfAbsent(endpoint, this::newLimiter);
+            if (!limiter.tryAcquire()) {
+                return reject(response, HttpStatus.SERVICE_UNAVAILABLE, OVERLOADED, "concurrency", endpoint);
+            }
+            request.setAttribute(LIMITER_ATTRIBUTE, limiter);
+            request.setAttribute(STARTED_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter != null && isLongPoll(handler)) {
+            request.removeAttribute(LIMITER_ATTRIBUTE);
+            limiter.release();
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        AdaptiveConcurrencyLimiter limiter = (AdaptiveConcurrencyLimiter) request.getAttribute(LIMITER_ATTRIBUTE);
+        if (limiter != null) {
+            request.removeAttribute(LIMITER_ATTRIBUTE);
+            limiter.release(System.nanoTime() - (long) request.getAttribute(STARTED_ATTRIBUTE));
+        }
+    }
+
+    private TokenBucket clientBucket(HttpServletRequest request) {
+        return clientBuckets.get(request.getRemoteAddr(), key -> new TokenBucket(clientRate, clientBurst));
+    }
+
+    private AdaptiveConcurrencyLimiter newLimiter(String endpoint) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, window);
+        Gauge.builder("product.api.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        Gauge.builder("product.api.concurrency.inflight", limiter, AdaptiveConcurrencyLimiter::getInflight)
+                .tag("endpoint", endpoint)
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    private boolean reject(HttpServletResponse response, HttpStatus status, byte[] body, String reason, String endpoint)
+            throws IOException {
+        meterRegistry.counter("product.api.rejected", "reason", reason, "endpoint", endpoint).increment();
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        return false;
+    }
+
+    /**
+     * A {@link DeferredResult} is completed by whatever it waits for, the request does no work until then.
+     */
+    private static boolean isLongPoll(Object handler) {
+        return handler instanceof HandlerMethod
+                && DeferredResult.class.isAssignableFrom(((HandlerMethod) handler).getReturnType().getParameterType());
+    }
+
+    private static String endpoint(HandlerMethod handlerMethod) {
+        return handlerMethod.getBeanType().getSimpleName() + "." + handlerMethod.getMethod().getName();
+    }
+}
@@ -0,0 +1,45 @@
+package ru.elseff.demo.web.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket of {@code capacity} tokens refilled at {@code ratePerSecond}. The state is the single
+ * instant at which the bucket is full again (the generic cell rate algorithm), so taking a token is
+ * one compare-and-set and idle buckets cost nothing to refill.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+
+    private final long capacityNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong fullAt;
+
+    public TokenBucket(double ratePerSecond, long capacity) {
+        this(ratePerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double ratePerSecond, long capacity, LongSupplier nanoClock) {
+        this.nanosPerToken = Math.max(1, (long) (1_000_000_000 / ratePerSecond));
+        this.capacityNanos = nanosPerToken * capacity;
+        this.nanoClock = nanoClock;
+        this.fullAt = new AtomicLong(nanoClock.getAsLong());
+    }
+
+    public boolean tryAcquire() {
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current - now, 0) + now + nanosPerToken;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
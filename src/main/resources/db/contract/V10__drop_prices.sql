@@ -0,0 +1,20 @@
+-- contract: applied only with app.migration.contract=true, set once no instance writes to prices anymore
+
+-- validating a NOT VALID check only takes a SHARE UPDATE EXCLUSIVE lock,
+-- SET NOT NULL then uses it instead of scanning the table under an exclusive lock
+alter table public.products
+    add constraint products_price_value_not_null check (price_value is not null) not valid;
+alter table public.products
+    validate constraint products_price_value_not_null;
+alter table public.products
+    alter column price_value set not null;
+alter table public.products
+    drop constraint products_price_value_not_null;
+
+drop trigger prices_sync_products_price_value on public.prices;
+drop function public.sync_products_price_value();
+drop trigger products_sync_prices_value on public.products;
+drop function public.sync_prices_value();
+drop trigger products_delete_prices on public.products;
+drop function public.delete_product_prices();
+drop table public.prices;
@@ -0,0 +1,71 @@
+-- append-only price log, partitioned by month so old months can be detached or dropped cheaply
+create table public.price_history
+(
+    id         bigserial,
+    product_id bigint      not null,
+    value      bigint      not null,
+    valid_from timestamptz not null,
+    constraint price_history_pkey primary key (id, valid_from)
+) partition by range (valid_from);
+
+create index price_history_product_id_valid_from_idx
+    on public.price_history (product_id, valid_from);
+
+-- catches rows of months nobody created a partition for yet
+create table public.price_history_default
+    partition of public.price_history default;
+
+-- creates the partition of the UTC month containing "month", returns its name
+create function public.create_price_history_partition(month date) returns text as
+$$
+declare
+    month_start timestamptz := date_trunc('month', month)::timestamp at time zone 'UTC';
+    partition_name text := 'price_history_' || to_char(month_start at time zone 'UTC', 'YYYY_MM');
+begin
+    execute format('create table if not exists public.%I partition of public.price_history for values from (%L) to (%L)',
+                   partition_name, month_start, month_start + interval '1 month');
+    return partition_name;
+end;
+$$ language plpgsql;
+
+select public.create_price_history_partition(current_date);
+select public.create_price_history_partition((current_date + interval '1 month')::date);
+
+-- every write path goes through products.price_value, so the history is recorded next to it;
+-- products inserted by instances still writing to prices get their price_value, and their
+-- first history row, only once the prices row is synced over
+create function public.record_price_history() returns trigger as
+$$
+begin
+    if new.price_value is not null
+        and (tg_op = 'INSERT' or new.price_value is distinct from old.price_value) then
+        insert into public.price_history (product_id, value, valid_from)
+        values (new.id, new.price_value, clock_timestamp());
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger products_record_price_history
+    after insert or update of price_value
+    on public.products
+    for each row
+execute procedure public.record_price_history();
+
+create function public.reject_price_history_change() returns trigger as
+$$
+begin
+    raise exception 'price_history is append-only';
+end;
+$$ language plpgsql;
+
+create trigger price_history_append_only
+    before update or delete or truncate
+    on public.price_history
+    for each statement
+execute procedure public.reject_price_history_change();
+
+insert into public.price_history (product_id, value, valid_from)
+select id, price_value, now()
+from public.products
+where price_value is not null;
@@ -0,0 +1,18 @@
+-- now() is evaluated once for the existing rows, so the column is added without rewriting the table
+alter table public.products
+    add column updated_at timestamptz not null default now();
+
+-- maintained here rather than by the application, so bulk and JDBC updates touch it too
+create function public.touch_products_updated_at() returns trigger as
+$$
+begin
+    new.updated_at := clock_timestamp();
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger products_touch_updated_at
+    before update
+    on public.products
+    for each row
+execute procedure public.touch_products_updated_at();
@@ -0,0 +1,44 @@
+-- transactional outbox of product changes; seq is the feed position, assigned after commit in commit order
+create table public.product_events
+(
+    id          bigserial
+        constraint product_events_pkey primary key,
+    seq         bigint
+        constraint product_events_seq_key unique,
+    product_id  bigint      not null,
+    type        varchar(16) not null,
+    payload     jsonb,
+    occurred_at timestamptz not null default clock_timestamp()
+);
+
+create sequence public.product_events_seq;
+
+create index product_events_unsequenced_idx
+    on public.product_events (id)
+    where seq is null;
+
+-- written in the transaction of the change itself, whichever path the change takes
+create function public.record_product_event() returns trigger as
+$$
+begin
+    if tg_op = 'DELETE' then
+        insert into public.product_events (product_id, type) values (old.id, 'DELETED');
+    else
+        insert into public.product_events (product_id, type, payload)
+        values (new.id,
+                case tg_op when 'INSERT' then 'CREATED' else 'UPDATED' end,
+                jsonb_build_object('id', new.id,
+                                   'name', new.name,
+                                   'barcode', new.barcode,
+                                   'countInStock', new.count_in_stock,
+                                   'price', new.price_value));
+    end if;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger products_record_event
+    after insert or update or delete
+    on public.products
+    for each row
+execute procedure public.record_product_event();
@@ -0,0 +1,8 @@
+ALTER SEQUENCE hibernate_sequence
+    INCREMENT 50;
+
+-- the pooled optimizer hands out (value - 49 .. value], so move the sequence past the existing ids
+SELECT setval('hibernate_sequence', greatest(
+        coalesce((SELECT max(id) FROM public.products), 0),
+        coalesce((SELECT max(id) FROM public.prices), 0),
+        1));
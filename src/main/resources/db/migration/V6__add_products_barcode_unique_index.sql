@@ -0,0 +1,2 @@
+create unique index products_barcode_uindex
+    on public.products (barcode);
@@ -0,0 +1,2 @@
+alter table public.products
+    add column version bigint not null default 0;
@@ -0,0 +1,16 @@
+-- name prefix search (like 'abc%'), text_pattern_ops compares byte-wise whatever the collation
+create index products_name_pattern_idx
+    on public.products (name text_pattern_ops);
+
+-- sort by name and keyset pagination over (name, id)
+create index products_name_id_idx
+    on public.products (name, id);
+
+-- price range filter and sort, covers the join back to products for index-only scans
+create index prices_value_product_id_idx
+    on public.prices (value, product_id);
+
+-- in-stock filter, only in-stock rows are indexed
+create index products_in_stock_id_idx
+    on public.products (id)
+    where count_in_stock > 0;
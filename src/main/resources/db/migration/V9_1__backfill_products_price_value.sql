@@ -0,0 +1,25 @@
+-- runs outside a transaction (see the .conf), every batch commits and releases its row locks,
+-- so writes to products wait for one batch at most instead of the whole table.
+-- Rows the trigger has filled meanwhile are skipped, their value is newer than the one read here.
+do
+$$
+declare
+    batch_size constant bigint := 10000;
+    batch_start bigint := 0;
+    last_id bigint;
+begin
+    select coalesce(max(id), 0) into last_id from public.products;
+    while batch_start < last_id
+        loop
+            update public.products p
+            set price_value = pr.value
+            from public.prices pr
+            where pr.product_id = p.id
+              and p.id > batch_start
+              and p.id <= batch_start + batch_size
+              and p.price_value is null;
+            commit;
+            batch_start := batch_start + batch_size;
+        end loop;
+end;
+$$;
@@ -0,0 +1,4 @@
+-- built without blocking writes; a build that fails leaves an invalid index behind,
+-- drop it before the migration is repaired and run again
+create index concurrently products_price_value_id_idx
+    on public.products (price_value, id);
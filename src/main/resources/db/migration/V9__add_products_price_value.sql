@@ -0,0 +1,61 @@
+-- expand: a nullable column without default is a catalog-only change, the table is not rewritten
+alter table public.products
+    add column price_value bigint;
+
+-- until the contract (db/contract/V10) both releases run side by side, so prices and
+-- products.price_value are kept in sync both ways; each direction only writes a changed value,
+-- which ends the round trip through the other trigger
+
+-- price writes of instances of the previous release
+create function public.sync_products_price_value() returns trigger as
+$$
+begin
+    update public.products
+    set price_value = new.value
+    where id = new.product_id
+      and price_value is distinct from new.value;
+    return new;
+end;
+$$ language plpgsql;
+
+create trigger prices_sync_products_price_value
+    after insert or update of value
+    on public.prices
+    for each row
+execute procedure public.sync_products_price_value();
+
+-- product writes of this release, which the previous one reads through a join on prices;
+-- ids come from hibernate_sequence, as the previous release takes them for prices rows
+create function public.sync_prices_value() returns trigger as
+$$
+begin
+    insert into public.prices (id, product_id, value)
+    values (nextval('public.hibernate_sequence'), new.id, new.price_value)
+    on conflict (product_id) do update
+        set value = excluded.value
+        where prices.value is distinct from excluded.value;
+    return null;
+end;
+$$ language plpgsql;
+
+create trigger products_sync_prices_value
+    after insert or update of price_value
+    on public.products
+    for each row
+    when (new.price_value is not null)
+execute procedure public.sync_prices_value();
+
+-- this release deletes products alone, the prices row referencing them has to go first
+create function public.delete_product_prices() returns trigger as
+$$
+begin
+    delete from public.prices where product_id = old.id;
+    return old;
+end;
+$$ language plpgsql;
+
+create trigger products_delete_prices
+    before delete
+    on public.products
+    for each row
+execute procedure public.delete_product_prices();
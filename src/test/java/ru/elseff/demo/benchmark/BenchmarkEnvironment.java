@@ -0,0 +1,91 @@
+package ru.elseff.demo.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.elseff.demo.DemoApplication;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Boots the application against a throwaway embedded PostgreSQL, so the benchmarks
+ * run against the real migrations without Docker or a database server.
+ */
+final class BenchmarkEnvironment implements AutoCloseable {
+
+    private final EmbeddedPostgres postgres;
+
+    private final ConfigurableApplicationContext context;
+
+    private BenchmarkEnvironment(EmbeddedPostgres postgres, ConfigurableApplicationContext context) {
+        this.postgres = postgres;
+        this.context = context;
+    }
+
+    static BenchmarkEnvironment start(String... properties) throws IOException {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    static BenchmarkEnvironment start(WebApplicationType webApplicationType, String... properties) throws IOException {
+        EmbeddedPostgres postgres = EmbeddedPostgres.start();
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--logging.level.root=WARN"
+        ));
+        // admission control would turn a benchmark's load into 429s, suites measuring it turn it back on
+        for (String property : List.of("app.rate-limit.enabled=false", "app.concurrency-limit.enabled=false")) {
+            String name = property.substring(0, property.indexOf('=') + 1);
+            if (Arrays.stream(properties).noneMatch(given -> given.startsWith(name))) {
+                args.add("--" + property);
+            }
+        }
+        Arrays.stream(properties).map(property -> "--" + property).forEach(args::add);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(webApplicationType)
+                .run(args.toArray(String[]::new));
+        return new BenchmarkEnvironment(postgres, context);
+    }
+
+    <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    String getProperty(String name) {
+        return context.getEnvironment().getProperty(name);
+    }
+
+    /**
+     * Inserts {@code count} products in one statement, barcodes equal the ids.
+     */
+    void seedProducts(int count) {
+        getBean(JdbcTemplate.class).update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "select id, 'Product', id, 10, 100 " +
+                "from (select nextval('hibernate_sequence') as id from generate_series(1, ?)) ids", count);
+    }
+
+    /**
+     * Inserts {@code count} products spread over names starting with every capital letter,
+     * prices from 1 to 10000 and a quarter of them out of stock, then refreshes planner statistics.
+     */
+    void seedVariedProducts(int count) {
+        JdbcTemplate jdbcTemplate = getBean(JdbcTemplate.class);
+        jdbcTemplate.update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "select id, chr(65 + (id % 26)::int) || translate(substr(md5(id::text), 1, 8), '0123456789', 'abcdefghij'), " +
+                "id, case when id % 4 = 0 then 0 else id % 50 + 1 end, (random() * 9999)::bigint + 1 " +
+                "from (select nextval('hibernate_sequence') as id from generate_series(1, ?)) ids", count);
+        jdbcTemplate.execute("vacuum analyze");
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,103 @@
+package ru.elseff.demo.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@value #THREADS} clients reading random products by id with the product cache off. The primary
+ * score is requests per second, the {@code queries} counter is database statements per second over
+ * the same time, compare both with the batch loader {@code off} and {@code on}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(ProductBatchLoadBenchmark.THREADS)
+@Fork(1)
+public class ProductBatchLoadBenchmark {
+
+    static final int THREADS = 64;
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"off", "on"})
+    public String batching;
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    private long[] ids;
+
+    private Statistics statistics;
+
+    private final AtomicLong countedStatements = new AtomicLong();
+
+    /**
+     * Statements are counted globally, every thread adds what was prepared since the last look.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Queries {
+        public long queries;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "spring.cache.type=none",
+                "app.rate-limit.enabled=false",
+                "app.concurrency-limit.enabled=false",
+                "app.batch-loader.enabled=" + "on".equals(batching));
+        environment.seedProducts(PRODUCTS);
+        ids = environment.getBean(JdbcTemplate.class)
+                .queryForList("select id from products", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        statistics = environment.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products/";
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetStatements() {
+        countedStatements.set(statistics.getPrepareStatementCount());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getSpecific(Queries queries) throws IOException, InterruptedException {
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id)).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Got " + response.statusCode() + " for product " + id);
+        }
+        long prepared = statistics.getPrepareStatementCount();
+        queries.queries += Math.max(0, prepared - countedStatements.getAndAccumulate(prepared, Math::max));
+        return response.body().length;
+    }
+}
@@ -0,0 +1,89 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second of {@code POST /api/v1/products:import} with a {@value #ROWS} row CSV body,
+ * every 100th row failing validation. Compare the {@code validationThreads} counts to see whether
+ * validation or the batched inserts limit the import.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(ProductImportBenchmark.ROWS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ProductImportBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @Param({"1", "4"})
+    public int validationThreads;
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private URI uri;
+
+    private long nextBarcode = 1;
+
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "app.import.validation-threads=" + validationThreads);
+        uri = URI.create("http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products:import");
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void truncate() {
+        environment.getBean(JdbcTemplate.class).execute("truncate products cascade");
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareBody() {
+        StringBuilder csv = new StringBuilder("name,barcode,countInStock,price\n");
+        for (int i = 0; i < ROWS; i++) {
+            csv.append(i % 100 == 0 ? "x" : "Product").append(',')
+                    .append(nextBarcode++).append(',')
+                    .append(i % 50 + 1).append(',')
+                    .append(i % 1000 + 1).append('\n');
+        }
+        body = csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public int importCsv() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,82 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read path of an unchanged {@value #PRODUCTS} product catalog with the rendered JSON cache {@code off}
+ * (every response serialized by Jackson) and {@code on}. Run with {@code -prof gc} to compare the
+ * allocation rate per request next to the latency percentiles; client and server share the JVM,
+ * the client side allocates the same in both modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(8)
+@Fork(1)
+public class ProductJsonCacheBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"off", "on"})
+    public String jsonCache;
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    private long[] ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "app.json-cache.enabled=" + "on".equals(jsonCache));
+        environment.seedProducts(PRODUCTS);
+        ids = environment.getBean(JdbcTemplate.class)
+                .queryForList("select id from products", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products";
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getAll() throws IOException, InterruptedException {
+        return get(baseUrl);
+    }
+
+    @Benchmark
+    public int getSpecific() throws IOException, InterruptedException {
+        return get(baseUrl + "/" + ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    private int get(String url) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url)).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,152 @@
+package ru.elseff.demo.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plain JDBC writes and reads of the product storage layouts: {@code split} is the old
+ * {@code products} plus {@code prices} pair joined by a foreign key, {@code inline} keeps the price
+ * in the product row. Scores are rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductLayoutBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private static final int SEEDED = 100_000;
+
+    @Param({"split", "inline"})
+    public String layout;
+
+    private EmbeddedPostgres postgres;
+
+    private Connection connection;
+
+    private long nextId = SEEDED + 1;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.start();
+        connection = postgres.getPostgresDatabase().getConnection();
+        try (Statement statement = connection.createStatement()) {
+            if (isSplit()) {
+                statement.execute("create table products (id bigint primary key, name varchar(255) not null, " +
+                        "barcode bigint not null unique, count_in_stock bigint not null)");
+                statement.execute("create table prices (id bigint primary key, " +
+                        "product_id bigint not null unique references products, value bigint not null)");
+                statement.execute("insert into products select id, 'Product', id, 10 from generate_series(1, " + SEEDED + ") id");
+                statement.execute("insert into prices select id, id, 100 from generate_series(1, " + SEEDED + ") id");
+            } else {
+                statement.execute("create table products (id bigint primary key, name varchar(255) not null, " +
+                        "barcode bigint not null unique, count_in_stock bigint not null, price_value bigint not null)");
+                statement.execute("insert into products select id, 'Product', id, 10, 100 from generate_series(1, " + SEEDED + ") id");
+            }
+            statement.execute("vacuum analyze");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void insert() throws SQLException {
+        long firstId = nextId;
+        nextId += BATCH;
+        if (isSplit()) {
+            try (PreparedStatement products = connection.prepareStatement(
+                    "insert into products (id, name, barcode, count_in_stock) values (?, ?, ?, ?)");
+                 PreparedStatement prices = connection.prepareStatement(
+                         "insert into prices (id, product_id, value) values (?, ?, ?)")) {
+                for (long id = firstId; id < nextId; id++) {
+                    products.setLong(1, id);
+                    products.setString(2, "Product");
+                    products.setLong(3, id);
+                    products.setLong(4, 10);
+                    products.addBatch();
+                    prices.setLong(1, id);
+                    prices.setLong(2, id);
+                    prices.setLong(3, 100);
+                    prices.addBatch();
+                }
+                products.executeBatch();
+                prices.executeBatch();
+            }
+        } else {
+            try (PreparedStatement products = connection.prepareStatement(
+                    "insert into products (id, name, barcode, count_in_stock, price_value) values (?, ?, ?, ?, ?)")) {
+                for (long id = firstId; id < nextId; id++) {
+                    products.setLong(1, id);
+                    products.setString(2, "Product");
+                    products.setLong(3, id);
+                    products.setLong(4, 10);
+                    products.setLong(5, 100);
+                    products.addBatch();
+                }
+                products.executeBatch();
+            }
+        }
+        connection.commit();
+    }
+
+    @Benchmark
+    public long readById() throws SQLException {
+        String sql = isSplit()
+                ? "select p.id, p.name, p.barcode, p.count_in_stock, pr.value from products p " +
+                "join prices pr on pr.product_id = p.id where p.id = ?"
+                : "select id, name, barcode, count_in_stock, price_value from products where id = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, ThreadLocalRandom.current().nextLong(1, SEEDED + 1));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(5);
+            }
+        } finally {
+            connection.commit();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long readPage() throws SQLException {
+        String sql = isSplit()
+                ? "select p.id, p.name, p.barcode, p.count_in_stock, pr.value from products p " +
+                "join prices pr on pr.product_id = p.id where p.id > ? order by p.id limit " + BATCH
+                : "select id, name, barcode, count_in_stock, price_value from products " +
+                "where id > ? order by id limit " + BATCH;
+        long sum = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, ThreadLocalRandom.current().nextLong(0, SEEDED - BATCH));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    sum += resultSet.getLong(5);
+                }
+            }
+        } finally {
+            connection.commit();
+        }
+        return sum;
+    }
+
+    private boolean isSplit() {
+        return "split".equals(layout);
+    }
+}
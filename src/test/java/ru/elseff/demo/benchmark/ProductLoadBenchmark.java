@@ -0,0 +1,78 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request latency of {@code GET /api/v1/products/{id}} under {@value #CLIENTS} concurrent clients,
+ * with the product cache off so every request waits on the database. Compare the p99/p99.9 of the
+ * {@code platform} (Tomcat thread pool) and {@code bounded} (product endpoints on a pool sized like the
+ * connection pool) execution modes. {@code -p mode=virtual-threads} adds one virtual thread per request,
+ * it needs Java 21.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(ProductLoadBenchmark.CLIENTS)
+@Fork(1)
+public class ProductLoadBenchmark {
+
+    static final int CLIENTS = 256;
+
+    private static final int PRODUCTS = 10_000;
+
+    @Param({"platform", "bounded"})
+    public String mode;
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    private long[] ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "spring.cache.type=none",
+                "app.execution.mode=" + mode);
+        environment.seedProducts(PRODUCTS);
+        ids = environment.getBean(JdbcTemplate.class)
+                .queryForList("select id from products", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products/";
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getSpecific() throws IOException, InterruptedException {
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + id)).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
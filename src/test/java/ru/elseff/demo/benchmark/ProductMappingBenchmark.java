@@ -0,0 +1,73 @@
+package ru.elseff.demo.benchmark;
+
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.elseff.demo.persistense.Price;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapperImpl;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost per call of the reflective ModelMapper mapping the write path used to do
+ * and the hand-written controller conversion against the generated {@link ProductMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductMappingBenchmark {
+
+    private ModelMapper modelMapper;
+
+    private ProductMapper productMapper;
+
+    private ProductDto productDto;
+
+    private Product product;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        productMapper = new ProductMapperImpl();
+        productDto = new ProductDto(null, "Test", 4600000000001L, 10L, 199L);
+        product = productMapper.toEntity(productDto);
+        product.setId(1L);
+    }
+
+    @Benchmark
+    public Product modelMapperToEntity() {
+        Product mapped = modelMapper.map(productDto, Product.class);
+        Price price = new Price(productDto.getPrice());
+        mapped.setPrice(price);
+        return mapped;
+    }
+
+    @Benchmark
+    public Product productMapperToEntity() {
+        return productMapper.toEntity(productDto);
+    }
+
+    /**
+     * ModelMapper cannot map {@code Price} to {@code Long}, the controller used to convert by hand.
+     */
+    @Benchmark
+    public ProductDto handWrittenToDto() {
+        ProductDto mapped = new ProductDto();
+        mapped.setCountInStock(product.getCountInStock());
+        mapped.setPrice(product.getPrice().getValue());
+        mapped.setBarcode(product.getBarcode());
+        mapped.setName(product.getName());
+        mapped.setId(product.getId());
+        return mapped;
+    }
+
+    @Benchmark
+    public ProductDto productMapperToDto() {
+        return productMapper.toDto(product);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 404s per second of {@code GET /api/v1/products/{id}} for ids that do not exist, the whole request
+ * path from the HTTP client through Tomcat, the product cache and the database to the error body.
+ * {@link ProductRejectionBenchmark} measures the exceptions alone, this one tells whether they still
+ * matter next to the rest of the request. Every request asks for a new id, as a scan for ids would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(ProductNotFoundBenchmark.CLIENTS)
+@Fork(1)
+public class ProductNotFoundBenchmark {
+
+    static final int CLIENTS = 16;
+
+    @Param({"caffeine", "none"})
+    public String cache;
+
+    private final AtomicLong nextId = new AtomicLong(Long.MAX_VALUE / 2);
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "spring.cache.type=" + cache);
+        environment.seedProducts(1_000);
+        baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products/";
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public int getUnknown() throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + nextId.incrementAndGet())).GET().build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 404) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
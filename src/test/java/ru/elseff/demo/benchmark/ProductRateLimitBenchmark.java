@@ -0,0 +1,107 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency of well-behaved clients, each a different forwarded address reading one product, while one
+ * misbehaving client hammers {@code GET /api/v1/products} for the whole {@value #PRODUCTS} product
+ * catalog from {@value #ABUSER_THREADS} threads. The product cache is off, so both compete for the
+ * database pool. Compare the {@code wellBehaved} percentiles with admission control {@code off} and {@code on};
+ * the {@code abuser} score counts rejected requests too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ProductRateLimitBenchmark {
+
+    static final int ABUSER_THREADS = 16;
+
+    private static final int PRODUCTS = 2_000;
+
+    @Param({"off", "on"})
+    public String limits;
+
+    private BenchmarkEnvironment environment;
+
+    private HttpClient httpClient;
+
+    private String baseUrl;
+
+    private long[] ids;
+
+    private final AtomicLong nextClient = new AtomicLong();
+
+    @Setup
+    public void setUp() throws IOException {
+        boolean enabled = "on".equals(limits);
+        environment = BenchmarkEnvironment.start(WebApplicationType.SERVLET,
+                "server.port=0",
+                "spring.cache.type=none",
+                // each client is its own forwarded address, localhost is a trusted proxy by default
+                "server.forward-headers-strategy=native",
+                "app.rate-limit.enabled=" + enabled,
+                "app.rate-limit.client-rate=10",
+                "app.rate-limit.client-burst=10",
+                "app.concurrency-limit.enabled=" + enabled,
+                "app.concurrency-limit.window=20");
+        environment.seedProducts(PRODUCTS);
+        ids = environment.getBean(JdbcTemplate.class)
+                .queryForList("select id from products", Long.class).stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        baseUrl = "http://localhost:" + environment.getProperty("local.server.port") + "/api/v1/products";
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    @Group("traffic")
+    @GroupThreads(ABUSER_THREADS)
+    public int abuser() throws IOException, InterruptedException {
+        return send(baseUrl, "198.18.0.1").statusCode();
+    }
+
+    @Benchmark
+    @Group("traffic")
+    @GroupThreads(2)
+    public int wellBehaved() throws IOException, InterruptedException {
+        long id = ids[ThreadLocalRandom.current().nextInt(ids.length)];
+        HttpResponse<byte[]> response = send(baseUrl + "/" + id, clientAddress(nextClient.incrementAndGet()));
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Well-behaved client got " + response.statusCode());
+        }
+        return response.body().length;
+    }
+
+    private static String clientAddress(long client) {
+        return "198.19." + (client >> 8 & 0xff) + "." + (client & 0xff);
+    }
+
+    private HttpResponse<byte[]> send(String url, String client) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header("X-Forwarded-For", client)
+                .GET()
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+}
@@ -0,0 +1,113 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.server.ResponseStatusException;
+import ru.elseff.demo.exception.ProductNotFoundException;
+import ru.elseff.demo.exception.ProductValidationException;
+import ru.elseff.demo.exception.handling.dto.ValidationErrorResponse;
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.controller.ProductController;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.validation.ProductValidator;
+
+import javax.validation.Validation;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Rejected requests per second, before and after the fast-fail path: a payload with an invalid name
+ * through Bean Validation and {@link MethodArgumentNotValidException} against {@link ProductValidator}
+ * and {@link ProductValidationException}, and a 404 as {@link ResponseStatusException} against
+ * {@link ProductNotFoundException}. Exceptions are created {@code stackDepth} frames deep, roughly
+ * where a request handler runs under Tomcat and Spring MVC.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductRejectionBenchmark {
+
+    @Param({"0", "120"})
+    public int stackDepth;
+
+    private SpringValidatorAdapter beanValidator;
+
+    private ProductValidator productValidator;
+
+    private MethodParameter parameter;
+
+    private ProductDto productDto;
+
+    private long id;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        beanValidator = new SpringValidatorAdapter(Validation.buildDefaultValidatorFactory().getValidator());
+        productValidator = new ProductValidator();
+        parameter = new MethodParameter(ProductController.class.getMethod("addProduct", ProductDto.class), 0);
+        productDto = new ProductDto(null, "Tt", 4600000000001L, 10L, 199L);
+    }
+
+    @Benchmark
+    public ValidationErrorResponse invalidWithBeanValidation() {
+        return deep(stackDepth, () -> {
+            BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(productDto, "productDto");
+            beanValidator.validate(productDto, bindingResult);
+            try {
+                throw new MethodArgumentNotValidException(parameter, bindingResult);
+            } catch (MethodArgumentNotValidException e) {
+                return new ValidationErrorResponse(e.getBindingResult().getFieldErrors().stream()
+                        .map(error -> new Violation(error.getField(), error.getDefaultMessage()))
+                        .collect(Collectors.toList()));
+            }
+        });
+    }
+
+    @Benchmark
+    public ValidationErrorResponse invalidWithProductValidator() {
+        return deep(stackDepth, () -> {
+            try {
+                productValidator.requireValid(productDto);
+                return null;
+            } catch (ProductValidationException e) {
+                return new ValidationErrorResponse(e.getViolations());
+            }
+        });
+    }
+
+    @Benchmark
+    public String notFoundWithResponseStatusException() {
+        long id = ++this.id;
+        return deep(stackDepth, () -> {
+            try {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Could not find product with id " + id);
+            } catch (ResponseStatusException e) {
+                return e.getReason();
+            }
+        });
+    }
+
+    @Benchmark
+    public String notFoundWithProductNotFoundException() {
+        long id = ++this.id;
+        return deep(stackDepth, () -> {
+            try {
+                throw ProductNotFoundException.byId(id);
+            } catch (ProductNotFoundException e) {
+                return e.getReason();
+            }
+        });
+    }
+
+    private static <T> T deep(int depth, Supplier<T> action) {
+        return depth == 0 ? action.get() : deep(depth - 1, action);
+    }
+}
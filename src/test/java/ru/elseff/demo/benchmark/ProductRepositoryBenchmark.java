@@ -0,0 +1,52 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Catalog reads against an embedded PostgreSQL: entity {@code findAll} hydrating managed
+ * products against the {@link ProductDto} projection used by the read path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductRepositoryBenchmark {
+
+    @Param({"100", "10000"})
+    private int size;
+
+    private BenchmarkEnvironment environment;
+
+    private ProductRepository productRepository;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start();
+        environment.seedProducts(size);
+        productRepository = environment.getBean(ProductRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<Product> findAll() {
+        return productRepository.findAll();
+    }
+
+    @Benchmark
+    public List<ProductDto> findAllProjected() {
+        return productRepository.findAllProjected();
+    }
+}
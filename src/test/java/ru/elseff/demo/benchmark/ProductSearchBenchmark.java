@@ -0,0 +1,72 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductPageDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSearchDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductSort;
+import ru.elseff.demo.web.api.modules.product.service.ProductService;
+
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * First page of {@code /search} for typical filters over a seeded catalog, against
+ * {@code filterInMemory} which downloads everything and filters it the way clients did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSearchBenchmark {
+
+    private static final int LIMIT = 100;
+
+    @Param({"100000"})
+    private int size;
+
+    private BenchmarkEnvironment environment;
+
+    private ProductService productService;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start("spring.cache.type=none");
+        environment.seedVariedProducts(size);
+        productService = environment.getBean(ProductService.class);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public ProductPageDto namePrefix() {
+        return productService.search(new ProductSearchDto("Ka", null, null, false, ProductSort.NAME), null, LIMIT);
+    }
+
+    @Benchmark
+    public ProductPageDto priceRange() {
+        return productService.search(new ProductSearchDto(null, 5000L, 5100L, false, ProductSort.PRICE), null, LIMIT);
+    }
+
+    @Benchmark
+    public ProductPageDto inStockByPrice() {
+        return productService.search(new ProductSearchDto(null, null, null, true, ProductSort.PRICE), null, LIMIT);
+    }
+
+    @Benchmark
+    public List<ProductDto> filterInMemory() {
+        return productService.getAll().stream()
+                .filter(productDto -> productDto.getPrice() >= 5000L && productDto.getPrice() <= 5100L)
+                .sorted(Comparator.comparing(ProductDto::getPrice).thenComparing(ProductDto::getId))
+                .limit(LIMIT)
+                .collect(Collectors.toList());
+    }
+}
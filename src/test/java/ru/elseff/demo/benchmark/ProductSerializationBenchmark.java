@@ -0,0 +1,65 @@
+package ru.elseff.demo.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapperImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Response side of {@code GET /api/v1/products}: entity to DTO conversion plus Jackson
+ * serialization of the list, and serialization alone for DTOs that come straight from a projection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSerializationBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+
+    private ProductMapper productMapper;
+
+    private List<Product> products;
+
+    private List<ProductDto> productDtos;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        productMapper = new ProductMapperImpl();
+        products = new ArrayList<>(size);
+        for (long i = 1; i <= size; i++) {
+            Product product = productMapper.toEntity(new ProductDto(null, "Product", 4600000000000L + i, 10L, 199L));
+            product.setId(i);
+            products.add(product);
+        }
+        productDtos = products.stream().map(productMapper::toDto).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public byte[] convertAndSerialize() throws JsonProcessingException {
+        List<ProductDto> dtos = products.stream()
+                .map(productMapper::toDto)
+                .collect(Collectors.toList());
+        return objectMapper.writeValueAsBytes(dtos);
+    }
+
+    @Benchmark
+    public byte[] serializeProjected() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(productDtos);
+    }
+}
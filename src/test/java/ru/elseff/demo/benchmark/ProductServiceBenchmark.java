@@ -0,0 +1,84 @@
+package ru.elseff.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+import ru.elseff.demo.web.api.modules.product.service.ProductService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write path of {@link ProductService} against an embedded PostgreSQL, scores are products per second.
+ * {@code addProductsOneByOne} against {@code addProductsInBatch} shows what JDBC batching and the
+ * pooled sequence buy for bulk inserts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductServiceBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private BenchmarkEnvironment environment;
+
+    private ProductService productService;
+
+    private Long productId;
+
+    private long nextBarcode = 1;
+
+    private long nextPrice = 1;
+
+    @Setup
+    public void setUp() throws IOException {
+        environment = BenchmarkEnvironment.start();
+        productService = environment.getBean(ProductService.class);
+        productId = productService.addProduct(newProductDto()).getId();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        environment.close();
+    }
+
+    @Benchmark
+    public Product addProduct() {
+        return productService.addProduct(newProductDto());
+    }
+
+    @Benchmark
+    public ProductDto updateProduct() {
+        ProductUpdateDto productUpdateDto = new ProductUpdateDto();
+        productUpdateDto.setPrice(nextPrice++);
+        return productService.updateProduct(productId, productUpdateDto);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void addProductsOneByOne() {
+        for (int i = 0; i < BATCH; i++) {
+            productService.addProduct(newProductDto());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Product> addProductsInBatch() {
+        List<ProductDto> productDtos = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            productDtos.add(newProductDto());
+        }
+        return productService.addProducts(productDtos);
+    }
+
+    private ProductDto newProductDto() {
+        return new ProductDto(null, "Product", nextBarcode++, 10L, 199L);
+    }
+}
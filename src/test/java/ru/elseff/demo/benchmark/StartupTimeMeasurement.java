@@ -0,0 +1,128 @@
+package ru.elseff.demo.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import ru.elseff.demo.DemoApplication;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Time from launching a fresh JVM to the first successful {@code GET /api/v1/products?limit=1},
+ * for each of the given Spring profiles. Run with {@code mvn -Pstartup-time verify}, arguments go
+ * to {@code -Dstartup.args="runs=5 profiles=default,fast-startup jvmArgs=-XX:TieredStopAtLevel=1"},
+ * where {@code jvmArgs} are comma separated options of the launched JVMs.
+ * <p>
+ * The database is migrated before the first measured run, so every run finds it up to date.
+ * Devtools is left off the classpath, as it is in the packaged jar.
+ */
+public final class StartupTimeMeasurement {
+
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private final String classpath = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+            .filter(entry -> !entry.contains("spring-boot-devtools"))
+            .collect(Collectors.joining(File.pathSeparator));
+
+    private final EmbeddedPostgres postgres;
+
+    private final List<String> jvmArgs;
+
+    private StartupTimeMeasurement(EmbeddedPostgres postgres, List<String> jvmArgs) {
+        this.postgres = postgres;
+        this.jvmArgs = jvmArgs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(Map.of("runs", "5", "profiles", "default,fast-startup", "jvmArgs", ""));
+        for (String arg : args) {
+            String[] option = arg.split("=", 2);
+            options.put(option[0], option[1]);
+        }
+        int runs = Integer.parseInt(options.get("runs"));
+        try (EmbeddedPostgres postgres = EmbeddedPostgres.start()) {
+            List<String> jvmArgs = Arrays.stream(options.get("jvmArgs").split(","))
+                    .filter(jvmArg -> !jvmArg.isEmpty())
+                    .collect(Collectors.toList());
+            StartupTimeMeasurement measurement = new StartupTimeMeasurement(postgres, jvmArgs);
+            measurement.start("default");
+            System.out.printf("%-20s %10s %10s %10s%n", "profile", "min, ms", "median, ms", "max, ms");
+            for (String profile : options.get("profiles").split(",")) {
+                List<Long> times = new ArrayList<>(runs);
+                for (int i = 0; i < runs; i++) {
+                    times.add(measurement.start(profile));
+                }
+                times.sort(null);
+                System.out.printf("%-20s %10d %10d %10d%n", profile, times.get(0), times.get(runs / 2), times.get(runs - 1));
+            }
+        }
+    }
+
+    /**
+     * Launches the application and waits for its first answer, returns the elapsed milliseconds.
+     */
+    private long start(String profile) throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmArgs);
+        command.addAll(List.of(
+                "-cp", classpath,
+                DemoApplication.class.getName(),
+                "--server.port=" + port,
+                "--spring.profiles.active=" + profile,
+                "--db_url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--db_username=postgres",
+                "--db_password=postgres",
+                "--logging.level.root=WARN"));
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/products?limit=1"))
+                .GET()
+                .build();
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        try {
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + process.exitValue());
+                }
+                if (System.nanoTime() - started > STARTUP_TIMEOUT.toNanos()) {
+                    throw new IllegalStateException("Application did not answer within " + STARTUP_TIMEOUT);
+                }
+                try {
+                    if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - started) / 1_000_000;
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(10);
+            }
+        } finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
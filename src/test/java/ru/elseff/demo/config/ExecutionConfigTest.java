@@ -0,0 +1,133 @@
+package ru.elseff.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import ru.elseff.demo.DemoApplication;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Product endpoints in the {@code bounded} execution mode against an embedded database.
+ */
+@SpringBootTest(properties = "app.execution.mode=bounded")
+@AutoConfigureMockMvc
+class ExecutionConfigTest {
+
+    private static final EmbeddedPostgres postgres = start();
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String endPoint = "/api/v1/products";
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("app.rate-limit.enabled", () -> "false");
+        registry.add("app.concurrency-limit.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @Test
+    @DisplayName("Product endpoints are answered from the bounded pool with their usual statuses")
+    void boundedMode_Keeps_Statuses() throws Exception {
+        ProductDto product = new ProductDto();
+        product.setName("Milk");
+        product.setBarcode(1L);
+        product.setPrice(10L);
+        product.setCountInStock(1L);
+
+        String created = performAsync(post(endPoint)
+                .content(objectMapper.writeValueAsString(product))
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Long id = objectMapper.readValue(created, ProductDto.class).getId();
+
+        String eTag = performAsync(get(endPoint + "/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Milk"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        performAsync(get(endPoint + "/" + id).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+        performAsync(get(endPoint).param("ids", String.valueOf(id)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(id));
+
+        performAsync(post(endPoint + "/" + id + "/stock/reserve")
+                .content("{\"quantity\": 1}")
+                .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNoContent());
+        performAsync(delete(endPoint + "/" + id))
+                .andExpect(status().isNoContent());
+        performAsync(get(endPoint + "/" + id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("The virtual threads mode does not start without virtual threads")
+    void virtualThreadsMode_Fails_Before_Java_21() {
+        Assumptions.assumeTrue(Runtime.version().feature() < 21);
+
+        SpringApplicationBuilder application = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE);
+
+        Throwable failure = Assertions.assertThrows(Exception.class, () -> application.run(
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=postgres",
+                "--app.execution.mode=virtual-threads"));
+        while (!(failure instanceof IllegalStateException) && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        Assertions.assertTrue(failure.getMessage().contains("needs Java 21"), failure::getMessage);
+    }
+
+    private ResultActions performAsync(RequestBuilder requestBuilder) throws Exception {
+        MvcResult asyncResult = mockMvc.perform(requestBuilder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(asyncResult));
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
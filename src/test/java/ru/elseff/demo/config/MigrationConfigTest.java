@@ -0,0 +1,117 @@
+package ru.elseff.demo.config;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+class MigrationConfigTest {
+
+    private static final EmbeddedPostgres postgres = start();
+
+    private static final JdbcTemplate jdbcTemplate = new JdbcTemplate(postgres.getPostgresDatabase());
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        configure().cleanDisabled(false).load().clean();
+    }
+
+    @Test
+    @DisplayName("Expand migrations backfill the price of every product and keep the prices table")
+    void migrate_Backfills_Prices() {
+        configure().target("8").load().migrate();
+        // ids in different batches of the backfill
+        for (long id : List.of(1L, 15_000L, 30_001L)) {
+            jdbcTemplate.update("insert into public.products (id, name, barcode, count_in_stock) values (?, 'Milk', ?, 1)",
+                    id, id);
+            jdbcTemplate.update("insert into public.prices (product_id, value) values (?, ?)", id, id * 10);
+        }
+
+        configure().load().migrate();
+
+        Assertions.assertEquals(List.of(10L, 150_000L, 300_010L), jdbcTemplate.queryForList(
+                "select price_value from public.products order by id", Long.class));
+        Assertions.assertEquals(Boolean.TRUE, jdbcTemplate.queryForObject(
+                "select indisvalid from pg_index where indexrelid = 'public.products_price_value_id_idx'::regclass",
+                Boolean.class));
+        Assertions.assertNotNull(jdbcTemplate.queryForObject("select to_regclass('public.prices')", String.class));
+    }
+
+    @Test
+    @DisplayName("Products inserted the way the previous release does get their history once the price is synced")
+    void migrate_Keeps_Previous_Release_Inserts_Working() {
+        configure().load().migrate();
+
+        jdbcTemplate.update("insert into public.products (id, name, barcode, count_in_stock) values (1, 'Milk', 1, 1)");
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from public.price_history", Long.class));
+        jdbcTemplate.update("insert into public.prices (product_id, value) values (1, 10)");
+
+        Assertions.assertEquals(List.of(10L), jdbcTemplate.queryForList(
+                "select value from public.price_history where product_id = 1", Long.class));
+    }
+
+    @Test
+    @DisplayName("Product writes of this release reach the prices the previous release reads")
+    void migrate_Syncs_Prices_Of_New_Writes() {
+        configure().load().migrate();
+        String previousReleaseRead = "select pr.value from public.products p join public.prices pr on pr.product_id = p.id " +
+                "where p.id = 1";
+
+        jdbcTemplate.update("insert into public.products (id, name, barcode, count_in_stock, price_value) " +
+                "values (1, 'Milk', 1, 1, 10)");
+        Assertions.assertEquals(10L, jdbcTemplate.queryForObject(previousReleaseRead, Long.class));
+
+        jdbcTemplate.update("update public.products set price_value = 20 where id = 1");
+        Assertions.assertEquals(20L, jdbcTemplate.queryForObject(previousReleaseRead, Long.class));
+        Assertions.assertEquals(List.of(10L, 20L), jdbcTemplate.queryForList(
+                "select value from public.price_history where product_id = 1 order by valid_from", Long.class));
+
+        jdbcTemplate.update("delete from public.products where id = 1");
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject("select count(*) from public.prices", Long.class));
+    }
+
+    @Test
+    @DisplayName("Contract migrations run out of order once enabled")
+    void migrate_Contract_After_Later_Migrations() {
+        configure().load().migrate();
+        jdbcTemplate.update("insert into public.products (name, barcode, count_in_stock, price_value) values ('Milk', 1, 1, 10)");
+
+        MigrationConfig migrationConfig = new MigrationConfig();
+        ReflectionTestUtils.setField(migrationConfig, "contract", true);
+        FluentConfiguration contract = configure();
+        migrationConfig.contractMigrationsCustomizer().customize(contract);
+        contract.load().migrate();
+
+        Assertions.assertNull(jdbcTemplate.queryForObject("select to_regclass('public.prices')", String.class));
+        Assertions.assertEquals("NO", jdbcTemplate.queryForObject("select is_nullable from information_schema.columns " +
+                "where table_name = 'products' and column_name = 'price_value'", String.class));
+    }
+
+    private static FluentConfiguration configure() {
+        return Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase());
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package ru.elseff.demo.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.elseff.demo.persistense.routing.ReadYourWrites;
+import ru.elseff.demo.persistense.routing.ReplicaRoutingDataSource;
+import ru.elseff.demo.web.api.modules.product.service.BarcodeIndex;
+
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Two embedded databases stand in for the primary and a replica. They do not replicate, so a row
+ * written to only one of them tells which one served a request. The replica reports the lag kept in
+ * its {@code replica_lag} table, through functions shadowing the built-in replication ones.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ReadReplicaConfigTest {
+
+    private static final long REPLICA_ONLY_ID = 1_000_000L;
+
+    private static final long LAGGING_ID = 2_000_000L;
+
+    private static final EmbeddedPostgres primary = start();
+
+    private static final EmbeddedPostgres replica = start();
+
+    private static final JdbcTemplate replicaJdbcTemplate = new JdbcTemplate(replica.getPostgresDatabase());
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private BarcodeIndex barcodeIndex;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        Flyway.configure()
+                .dataSource(replica.getPostgresDatabase())
+                .load()
+                .migrate();
+        replicaJdbcTemplate.execute("create schema standby");
+        replicaJdbcTemplate.execute("create table standby.replica_lag (seconds int not null)");
+        replicaJdbcTemplate.execute("insert into standby.replica_lag values (0)");
+        replicaJdbcTemplate.execute("create function standby.pg_is_in_recovery() returns boolean " +
+                "language sql as 'select true'");
+        replicaJdbcTemplate.execute("create function standby.pg_last_wal_receive_lsn() returns pg_lsn " +
+                "language sql as 'select ''0/2''::pg_lsn'");
+        replicaJdbcTemplate.execute("create function standby.pg_last_wal_replay_lsn() returns pg_lsn " +
+                "language sql as 'select ''0/1''::pg_lsn'");
+        replicaJdbcTemplate.execute("create function standby.pg_last_xact_replay_timestamp() returns timestamptz " +
+                "language sql as 'select now() - make_interval(secs => seconds) from standby.replica_lag'");
+        // ahead of pg_catalog, for connections opened from now on
+        replicaJdbcTemplate.execute("alter database postgres set search_path = public, standby, pg_catalog");
+        registry.add("spring.datasource.url", () -> primary.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        // the second replica is never up, reads have to keep working without it
+        registry.add("app.read-replicas.urls",
+                () -> replica.getJdbcUrl("postgres", "postgres") + ",jdbc:postgresql://localhost:1/postgres");
+        registry.add("app.read-replicas.connection-timeout", () -> "250ms");
+        registry.add("app.read-replicas.health-check-interval", () -> "200");
+        registry.add("app.read-replicas.read-your-writes-window", () -> "1s");
+        registry.add("app.json-cache.enabled", () -> "false");
+        registry.add("app.rate-limit.enabled", () -> "false");
+        registry.add("app.concurrency-limit.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        primary.close();
+        replica.close();
+    }
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        replicaJdbcTemplate.update("delete from products");
+        replicaJdbcTemplate.update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "values (?, 'Replica', ?, 1, 1)", REPLICA_ONLY_ID, REPLICA_ONLY_ID);
+        jdbcTemplate.update("delete from products where id = ?", LAGGING_ID);
+        givenReplicaLag(0);
+        clearCaches();
+        while (readYourWrites.hasRecentWrite()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("Reads are served by the replica")
+    void reads_From_Replica() throws Exception {
+        mockMvc.perform(get("/api/v1/products/" + REPLICA_ONLY_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Replica"));
+        mockMvc.perform(get("/api/v1/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == " + REPLICA_ONLY_ID + ")].name").value("Replica"));
+        mockMvc.perform(get("/api/v1/products/search").param("name", "Repl"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.products[0].id").value(REPLICA_ONLY_ID));
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "select count(*) from products where id = ?", Integer.class, REPLICA_ONLY_ID));
+    }
+
+    @Test
+    @DisplayName("Writes go to the primary and reads follow them there")
+    void writes_To_Primary_Read_Your_Writes() throws Exception {
+        String response = mockMvc.perform(post("/api/v1/products")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Primary\",\"barcode\":42,\"countInStock\":1,\"price\":10}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(response).get("id").asLong();
+
+        mockMvc.perform(get("/api/v1/products/" + id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Primary"));
+        Assertions.assertEquals(0, replicaJdbcTemplate.queryForObject(
+                "select count(*) from products where id = ?", Integer.class, id));
+
+        while (readYourWrites.hasRecentWrite()) {
+            Thread.sleep(10);
+        }
+        // the read above cached what the primary had, the replica has to answer the next one
+        clearCaches();
+        mockMvc.perform(get("/api/v1/products/" + id))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("A replica lagging past the read-your-writes window does not refill the caches")
+    void lagging_Replica_Not_Cached() throws Exception {
+        givenReplicaLag(5);
+        Assertions.assertEquals(0, meterRegistry.get("db.replica.available").tag("replica", "replica-1").gauge().value());
+        // the replica has not replayed the change yet
+        replicaJdbcTemplate.update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "values (?, 'Stale', ?, 1, 1)", LAGGING_ID, LAGGING_ID);
+        jdbcTemplate.update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "values (?, 'Fresh', ?, 1, 1)", LAGGING_ID, LAGGING_ID);
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/products/" + LAGGING_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Fresh"));
+            mockMvc.perform(get("/api/v1/products/by-barcode/" + LAGGING_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.name").value("Fresh"));
+        }
+
+        // caught up as far as the check can tell, the same refill would now take the replica's row
+        givenReplicaLag(0);
+        clearCaches();
+        mockMvc.perform(get("/api/v1/products/" + LAGGING_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Stale"));
+    }
+
+    @Test
+    @DisplayName("A replica that cannot be reached is taken out of rotation")
+    void unreachable_Replica_Ejected() throws Exception {
+        replicaRoutingDataSource.checkReplicas();
+
+        for (int i = 0; i < 10; i++) {
+            mockMvc.perform(get("/api/v1/products/" + REPLICA_ONLY_ID))
+                    .andExpect(status().isOk());
+        }
+        Assertions.assertEquals(0, meterRegistry.get("db.replica.available").tag("replica", "replica-2").gauge().value());
+        Assertions.assertEquals(1, meterRegistry.get("db.replica.available").tag("replica", "replica-1").gauge().value());
+    }
+
+    private void givenReplicaLag(int seconds) {
+        replicaJdbcTemplate.update("update standby.replica_lag set seconds = ?", seconds);
+        replicaRoutingDataSource.checkReplicas();
+    }
+
+    private void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        barcodeIndex.clear();
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ru.elseff.demo.persistense.routing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource first;
+
+    @Mock
+    private DataSource second;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    private final Connection primaryConnection = mock(Connection.class);
+
+    private final Connection firstConnection = mock(Connection.class);
+
+    private final Connection secondConnection = mock(Connection.class);
+
+    private final AtomicInteger firstActive = new AtomicInteger();
+
+    private final AtomicInteger secondActive = new AtomicInteger();
+
+    private ReplicaRoutingDataSource.Replica firstReplica;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        MockitoAnnotations.openMocks(this);
+        given(readYourWrites.getWindow()).willReturn(Duration.ofSeconds(10));
+        given(primary.getConnection()).willReturn(primaryConnection);
+        givenLag(first, firstConnection, 0);
+        givenLag(second, secondConnection, 0);
+        firstReplica = new ReplicaRoutingDataSource.Replica("replica-1", first, firstActive::get);
+        routingDataSource = new ReplicaRoutingDataSource(primary,
+                List.of(firstReplica, new ReplicaRoutingDataSource.Replica("replica-2", second, secondActive::get)),
+                readYourWrites);
+        routingDataSource.checkReplicas();
+        clearInvocations(first, second);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    @DisplayName("Replicas are not read before their lag is known")
+    void getConnection_Primary_Before_First_Check() throws SQLException {
+        ReplicaRoutingDataSource unchecked = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaRoutingDataSource.Replica("replica-1", first, firstActive::get)), readYourWrites);
+
+        Assertions.assertSame(primaryConnection, unchecked.getConnection());
+    }
+
+    @Test
+    @DisplayName("Connections outside read-only transactions come from the primary")
+    void getConnection_Primary_Outside_Read_Only() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+        verify(first, never()).getConnection();
+        verify(second, never()).getConnection();
+    }
+
+    @Test
+    @DisplayName("Read-only transactions get the least busy replica")
+    void getConnection_Least_Busy_Replica() throws SQLException {
+        firstActive.set(3);
+        secondActive.set(1);
+
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+
+        firstActive.set(0);
+        Assertions.assertSame(firstConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("Equally busy replicas take turns")
+    void getConnection_Round_Robin() throws SQLException {
+        Assertions.assertNotSame(routingDataSource.getConnection(), routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("Reads stay on the primary right after a write")
+    void getConnection_Primary_After_Write() throws SQLException {
+        given(readYourWrites.hasRecentWrite()).willReturn(true);
+
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("A replica failing to connect is taken out of rotation")
+    void getConnection_Ejects_Failing_Replica() throws SQLException {
+        given(first.getConnection()).willThrow(new SQLException("Connection refused"));
+        secondActive.set(1);
+
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+        Assertions.assertFalse(firstReplica.isAvailable());
+
+        secondActive.set(5);
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+        verify(first, times(1)).getConnection();
+    }
+
+    @Test
+    @DisplayName("Without available replicas reads go to the primary until the check puts a replica back")
+    void checkReplicas_Readmits_Recovered_Replica() throws SQLException {
+        given(first.getConnection()).willThrow(new SQLException("Connection refused"));
+        given(second.getConnection()).willThrow(new SQLException("Connection refused"));
+
+        Assertions.assertSame(primaryConnection, routingDataSource.getConnection());
+
+        givenLag(first, firstConnection, 0);
+        routingDataSource.checkReplicas();
+
+        Assertions.assertTrue(firstReplica.isAvailable());
+        Assertions.assertSame(firstConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("A replica lagging past the read-your-writes window is taken out by the check")
+    void checkReplicas_Ejects_Lagging_Replica() throws SQLException {
+        givenLag(first, firstConnection, 30);
+        givenLag(second, secondConnection, 1);
+
+        routingDataSource.checkReplicas();
+
+        Assertions.assertFalse(firstReplica.isAvailable());
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+    }
+
+    @Test
+    @DisplayName("A replica drops out once its lag plus the time since the check reaches the window")
+    void isAvailable_Counts_Time_Since_Check() throws Exception {
+        givenLag(first, firstConnection, 9.9);
+
+        routingDataSource.checkReplicas();
+        Assertions.assertTrue(firstReplica.isAvailable());
+
+        Thread.sleep(200);
+        Assertions.assertFalse(firstReplica.isAvailable());
+        Assertions.assertSame(secondConnection, routingDataSource.getConnection());
+    }
+
+    private void givenLag(DataSource replica, Connection connection, double lagSeconds) throws SQLException {
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        // the replica may be stubbed to fail already, so not through a call to getConnection()
+        willReturn(connection).given(replica).getConnection();
+        given(connection.createStatement()).willReturn(statement);
+        given(statement.executeQuery(anyString())).willReturn(resultSet);
+        given(resultSet.next()).willReturn(true);
+        given(resultSet.getDouble(1)).willReturn(lagSeconds);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.elseff.demo.web.api.modules.product.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.elseff.demo.persistense.Price;
+import ru.elseff.demo.persistense.Product;
+import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.service.ProductChangeFeed;
+import ru.elseff.demo.web.api.modules.product.service.ProductEventSequencer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The outbox, its sequencer and the {@code /changes} feed against an embedded database.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ProductChangeFeedTest {
+
+    private static final EmbeddedPostgres postgres = start();
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductEventSequencer productEventSequencer;
+
+    @Autowired
+    private ProductChangeFeed productChangeFeed;
+
+    private final String endPoint = "/api/v1/products";
+
+    private long nextBarcode = 1;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        // positions are handed out by the tests, not by the scheduled poll
+        registry.add("app.product-events.poll-interval", () -> "3600000");
+        registry.add("app.rate-limit.enabled", () -> "false");
+        registry.add("app.concurrency-limit.enabled", () -> "false");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        productRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Get product changes in commit order")
+    void getChanges() throws Exception {
+        long since = sequenceAllEvents();
+
+        String created = mockMvc.perform(post(endPoint)
+                        .content(objectMapper.writeValueAsString(getProductDto()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Long id = objectMapper.readValue(created, ProductDto.class).getId();
+        mockMvc.perform(patch(endPoint + "/" + id)
+                        .content("{\"name\": \"Updated\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete(endPoint + "/" + id))
+                .andExpect(status().isNoContent());
+        sequenceAllEvents();
+
+        MvcResult asyncResult = mockMvc.perform(get(endPoint + "/changes").param("since", String.valueOf(since)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String response = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        JsonNode changes = objectMapper.readTree(response);
+        List<String> actualTypes = new ArrayList<>();
+        changes.get("events").forEach(event -> actualTypes.add(event.get("type").asText()));
+        JsonNode updated = changes.get("events").get(1);
+
+        Assertions.assertEquals(List.of("CREATED", "UPDATED", "DELETED"), actualTypes);
+        Assertions.assertEquals(id, updated.get("productId").asLong());
+        Assertions.assertEquals("Updated", updated.get("product").get("name").asText());
+        Assertions.assertTrue(changes.get("events").get(2).get("product").isNull());
+        Assertions.assertEquals(changes.get("events").get(2).get("seq").asLong(), changes.get("next").asLong());
+    }
+
+    @Test
+    @DisplayName("Get product changes waits for the next change")
+    void getChanges_Long_Poll() throws Exception {
+        long since = sequenceAllEvents();
+
+        MvcResult asyncResult = mockMvc.perform(get(endPoint + "/changes").param("since", String.valueOf(since)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> asyncResult.getAsyncResult(0));
+
+        Product product = productRepository.save(getProduct());
+        sequenceAllEvents();
+        productChangeFeed.poll();
+
+        String response = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        JsonNode events = objectMapper.readTree(response).get("events");
+
+        Assertions.assertEquals(1, events.size());
+        Assertions.assertEquals("CREATED", events.get(0).get("type").asText());
+        Assertions.assertEquals(product.getId(), events.get(0).get("productId").asLong());
+    }
+
+    @Test
+    @DisplayName("An event committed late is sequenced after the events committed before it")
+    void sequence_Late_Commit() throws Exception {
+        sequenceAllEvents();
+        long lateId;
+        try (Connection connection = postgres.getPostgresDatabase().getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement("insert into products " +
+                    "(id, name, barcode, count_in_stock, price_value) values (nextval('hibernate_sequence'), 'Late', ?, 1, 1) " +
+                    "returning id")) {
+                insert.setLong(1, nextBarcode++);
+                try (ResultSet inserted = insert.executeQuery()) {
+                    inserted.next();
+                    lateId = inserted.getLong(1);
+                }
+            }
+            Product early = productRepository.save(getProduct());
+            sequenceAllEvents();
+
+            Assertions.assertNull(seqOf(lateId));
+            Assertions.assertNotNull(seqOf(early.getId()));
+
+            connection.commit();
+            sequenceAllEvents();
+
+            Assertions.assertTrue(seqOf(lateId) > seqOf(early.getId()));
+        }
+    }
+
+    /**
+     * Sequences every committed event, returns the latest feed position.
+     */
+    private long sequenceAllEvents() {
+        while (jdbcTemplate.queryForObject("select count(*) from product_events where seq is null", Long.class) > 0) {
+            productEventSequencer.sequence();
+        }
+        return jdbcTemplate.queryForObject("select coalesce(max(seq), 0) from product_events", Long.class);
+    }
+
+    private Long seqOf(Long productId) {
+        return jdbcTemplate.queryForObject("select max(seq) from product_events where product_id = ?", Long.class,
+                productId);
+    }
+
+    private ProductDto getProductDto() {
+        ProductDto product = new ProductDto();
+        product.setName("Test");
+        product.setBarcode(nextBarcode++);
+        product.setPrice(10L);
+        product.setCountInStock(1L);
+        return product;
+    }
+
+    private Product getProduct() {
+        Product product = new Product();
+        product.setName("Test");
+        product.setBarcode(nextBarcode++);
+        Price price = new Price();
+        price.setValue(1L);
+        product.setPrice(price);
+        product.setCountInStock(1L);
+        return product;
+    }
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,18 +2,31 @@ package ru.elseff.demo.web.api.modules.product.controller;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -21,18 +34,44 @@ import ru.elseff.demo.exception.handling.dto.Violation;
 import ru.elseff.demo.persistense.Price;
 import ru.elseff.demo.persistense.Product;
 import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.web.api.modules.product.dto.PriceHistoryDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductBatchUpdateDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
-
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportErrorDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportJobDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductImportStatus;
+import ru.elseff.demo.web.api.modules.product.dto.ProductPageDto;
+import ru.elseff.demo.web.api.modules.product.dto.StockChangeDto;
+import ru.elseff.demo.web.api.modules.product.service.BarcodeIndex;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @Testcontainers
 @AutoConfigureMockMvc
+@AutoConfigureMetrics
 class ProductControllerTest {
 
     @Container
@@ -47,18 +86,38 @@ class ProductControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private BarcodeIndex barcodeIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private final String endPoint = "/api/v1/products";
 
+    private long nextBarcode = 1;
+
     @DynamicPropertySource
     static void configureProperties(DynamicPropertyRegistry registry) {
         registry.add("spring.datasource.url", postgres::getJdbcUrl);
         registry.add("spring.datasource.username", postgres::getUsername);
         registry.add("spring.datasource.password", postgres::getPassword);
+        registry.add("spring.jpa.properties.hibernate.generate_statistics", () -> "true");
+        // the tests fire bursts from one address, admission control is covered by RateLimitInterceptorTest
+        registry.add("app.rate-limit.enabled", () -> "false");
+        registry.add("app.concurrency-limit.enabled", () -> "false");
     }
 
     @BeforeEach
     void setUp() {
         productRepository.deleteAll();
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        barcodeIndex.clear();
     }
 
     @Test
@@ -92,6 +151,226 @@ class ProductControllerTest {
         Assertions.assertEquals(expectedListSize, actualListSize);
     }
 
+    @Test
+    @DisplayName("Get all products with constant statement count")
+    void getAllProducts_Statement_Count_Is_Constant() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        productRepository.save(getProduct());
+        statistics.clear();
+        mockMvc.perform(get(endPoint)).andExpect(status().isOk());
+        long statementsForOneProduct = statistics.getPrepareStatementCount();
+
+        for (int i = 0; i < 10; i++) {
+            productRepository.save(getProduct());
+        }
+        statistics.clear();
+        mockMvc.perform(get(endPoint)).andExpect(status().isOk());
+        long statementsForElevenProducts = statistics.getPrepareStatementCount();
+
+        // the catalog version for the ETag and the projection itself
+        Assertions.assertEquals(2, statementsForOneProduct);
+        Assertions.assertEquals(statementsForOneProduct, statementsForElevenProducts);
+    }
+
+    @Test
+    @DisplayName("Get products by ids")
+    void getByIds() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+
+        String response = mockMvc.perform(get(endPoint)
+                        .param("ids", second.getId() + ",0," + first.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        List<ProductDto> products = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        Assertions.assertEquals(List.of(second.getId(), first.getId()),
+                products.stream().map(ProductDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Get products page")
+    void getPage() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+        Product third = productRepository.save(getProduct());
+
+        MockHttpServletRequestBuilder request = get(endPoint)
+                .param("after", String.valueOf(first.getId()))
+                .param("limit", "1")
+                .characterEncoding(StandardCharsets.UTF_8)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        ProductPageDto page = objectMapper.readValue(response, ProductPageDto.class);
+
+        Assertions.assertEquals(1, page.getProducts().size());
+        Assertions.assertEquals(second.getId(), page.getProducts().get(0).getId());
+        Assertions.assertEquals(String.valueOf(second.getId()), page.getNextCursor());
+
+        request = get(endPoint)
+                .param("after", page.getNextCursor())
+                .param("limit", "2")
+                .characterEncoding(StandardCharsets.UTF_8)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        page = objectMapper.readValue(response, ProductPageDto.class);
+
+        Assertions.assertEquals(1, page.getProducts().size());
+        Assertions.assertEquals(third.getId(), page.getProducts().get(0).getId());
+        Assertions.assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Get products page if ids are given too")
+    void getPage_With_Ids() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+
+        String response = mockMvc.perform(get(endPoint)
+                        .param("ids", String.valueOf(second.getId()))
+                        .param("limit", "5"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        ProductPageDto page = objectMapper.readValue(response, ProductPageDto.class);
+
+        Assertions.assertEquals(List.of(first.getId(), second.getId()),
+                page.getProducts().stream().map(ProductDto::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Get products page if limit is invalid")
+    void getPage_If_Limit_Is_Invalid() throws Exception {
+        MockHttpServletRequestBuilder request = get(endPoint)
+                .param("limit", "0")
+                .characterEncoding(StandardCharsets.UTF_8)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Search products by name prefix, price and stock")
+    void searchProducts() throws Exception {
+        saveProduct("Apple", 10L, 1L);
+        saveProduct("Apricot", 20L, 0L);
+        saveProduct("Apron", 30L, 5L);
+        saveProduct("Banana", 20L, 5L);
+
+        MockHttpServletRequestBuilder request = get(endPoint + "/search")
+                .param("name", "Ap")
+                .param("minPrice", "15")
+                .param("inStock", "true");
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        ProductPageDto page = objectMapper.readValue(response, ProductPageDto.class);
+        List<String> actualNames = page.getProducts().stream().map(ProductDto::getName).collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of("Apron"), actualNames);
+        Assertions.assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Search products sorted by price page by page")
+    void searchProducts_Sorted_Pages() throws Exception {
+        saveProduct("Cherry", 30L, 1L);
+        saveProduct("Apple", 10L, 1L);
+        saveProduct("Banana", 20L, 1L);
+        saveProduct("Date", 20L, 1L);
+
+        List<Long> prices = new ArrayList<>();
+        String cursor = null;
+        do {
+            MockHttpServletRequestBuilder request = get(endPoint + "/search")
+                    .param("sort", "PRICE")
+                    .param("limit", "3");
+            if (cursor != null) {
+                request.param("after", cursor);
+            }
+            String response = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+            ProductPageDto page = objectMapper.readValue(response, ProductPageDto.class);
+            page.getProducts().forEach(product -> prices.add(product.getPrice()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        Assertions.assertEquals(List.of(10L, 20L, 20L, 30L), prices);
+    }
+
+    @Test
+    @DisplayName("Search products with invalid cursor")
+    void searchProducts_Invalid_Cursor() throws Exception {
+        mockMvc.perform(get(endPoint + "/search").param("sort", "NAME").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Stream all products")
+    void streamAll() throws Exception {
+        productRepository.save(getProduct());
+        productRepository.save(getProduct());
+
+        MvcResult asyncResult = mockMvc.perform(get(endPoint + "/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String response = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        String[] lines = response.split("\n");
+
+        Assertions.assertEquals(2, lines.length);
+        for (String line : lines) {
+            ProductDto productDto = objectMapper.readValue(line, ProductDto.class);
+            Assertions.assertEquals("Test", productDto.getName());
+            Assertions.assertEquals(1L, productDto.getPrice());
+        }
+    }
+
+    @Test
+    @DisplayName("Export products as CSV")
+    void export() throws Exception {
+        Product product = productRepository.save(getProduct());
+
+        MvcResult asyncResult = mockMvc.perform(get(endPoint + "/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String response = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv"))
+                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=products.csv"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals("id,name,barcode,countInStock,price\n"
+                + product.getId() + ",Test," + product.getBarcode() + ",1,1\n", response);
+    }
+
+    @Test
+    @DisplayName("Export products in an unknown format")
+    void export_If_Format_Is_Unknown() throws Exception {
+        mockMvc.perform(get(endPoint + "/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Get specific product")
     void getSpecific() throws Exception {
@@ -114,6 +393,83 @@ class ProductControllerTest {
         Assertions.assertEquals(expectedProductName, actualProductName);
     }
 
+    @Test
+    @DisplayName("Get specific product if not modified")
+    void getSpecific_Not_Modified() throws Exception {
+        Product product = productRepository.save(getProduct());
+        String endPoint = this.endPoint + "/" + product.getId();
+
+        MockHttpServletResponse response = mockMvc.perform(get(endPoint))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse();
+        String eTag = response.getHeader(HttpHeaders.ETAG);
+
+        Assertions.assertEquals("\"" + product.getVersion() + "\"", eTag);
+
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_MODIFIED_SINCE, response.getHeader(HttpHeaders.LAST_MODIFIED)))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(stockRequest(product.getId(), "reserve", 1L))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + (product.getVersion() + 1) + "\""));
+    }
+
+    @Test
+    @DisplayName("Get all products if not modified")
+    void getAllProducts_Not_Modified() throws Exception {
+        productRepository.save(getProduct());
+
+        String eTag = mockMvc.perform(get(endPoint))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        productRepository.save(getProduct());
+
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Update and delete product with stale If-Match")
+    void updateProduct_If_Match() throws Exception {
+        Product product = productRepository.save(getProduct());
+        String staleETag = "\"" + (product.getVersion() - 1) + "\"";
+        String eTag = "\"" + product.getVersion() + "\"";
+
+        MockHttpServletRequestBuilder update = patch(endPoint + "/" + product.getId())
+                .content("{\"name\": \"Updated\"}")
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mockMvc.perform(update.header(HttpHeaders.IF_MATCH, staleETag))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete(endPoint + "/" + product.getId()).header(HttpHeaders.IF_MATCH, staleETag))
+                .andExpect(status().isPreconditionFailed());
+
+        String newETag = mockMvc.perform(patch(endPoint + "/" + product.getId())
+                        .content("{\"name\": \"Updated\"}")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.IF_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(delete(endPoint + "/" + product.getId()).header(HttpHeaders.IF_MATCH, eTag))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete(endPoint + "/" + product.getId()).header(HttpHeaders.IF_MATCH, newETag))
+                .andExpect(status().isNoContent());
+    }
+
     @Test
     @DisplayName("Get specific product if not exists")
     void getSpecific_If_Not_Exists() throws Exception {
@@ -124,9 +480,154 @@ class ProductControllerTest {
                 .characterEncoding(StandardCharsets.UTF_8);
 
         mockMvc.perform(request)
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"message\": \"Could not find product with id 0\"}"));
+    }
+
+    @Test
+    @DisplayName("Get product price history")
+    void getPriceHistory() throws Exception {
+        Instant from = Instant.now();
+        Product product = saveProduct("Test", 10L, 1L);
+        product.getPrice().setValue(20L);
+        product = productRepository.save(product);
+        Instant between = Instant.now();
+        product.setName("Renamed");
+        product.getPrice().setValue(30L);
+        productRepository.save(product);
+
+        String response = mockMvc.perform(get(endPoint + "/" + product.getId() + "/prices")
+                        .param("from", from.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<PriceHistoryDto> history = objectMapper.readValue(response, new TypeReference<>() {
+        });
+        List<Long> actualPrices = history.stream().map(PriceHistoryDto::getPrice).collect(Collectors.toList());
+
+        Assertions.assertEquals(List.of(10L, 20L, 30L), actualPrices);
+
+        response = mockMvc.perform(get(endPoint + "/" + product.getId() + "/prices/as-of")
+                        .param("at", between.toString()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(20L, objectMapper.readValue(response, PriceHistoryDto.class).getPrice());
+    }
+
+    @Test
+    @DisplayName("Get product price before its first price")
+    void getPriceAt_Before_History() throws Exception {
+        Instant before = Instant.now().minusSeconds(60);
+        Product product = productRepository.save(getProduct());
+
+        mockMvc.perform(get(endPoint + "/" + product.getId() + "/prices/as-of")
+                        .param("at", before.toString()))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Price history is append-only and partitioned by month")
+    void priceHistory_Append_Only() {
+        productRepository.save(getProduct());
+
+        Assertions.assertThrows(DataAccessException.class,
+                () -> jdbcTemplate.update("delete from price_history"));
+        Assertions.assertThrows(DataAccessException.class,
+                () -> jdbcTemplate.update("update price_history set value = 0"));
+
+        String partition = "price_history_" + DateTimeFormatter.ofPattern("yyyy_MM").format(LocalDate.now(ZoneOffset.UTC));
+        Long rowsInDefault = jdbcTemplate.queryForObject("select count(*) from price_history_default", Long.class);
+        Long rowsInMonth = jdbcTemplate.queryForObject("select count(*) from " + partition, Long.class);
+
+        Assertions.assertEquals(0L, rowsInDefault);
+        Assertions.assertTrue(rowsInMonth > 0);
+    }
+
+    @Test
+    @DisplayName("Get product by barcode")
+    void getByBarcode() throws Exception {
+        productRepository.save(getProduct());
+        Product product = productRepository.save(getProduct());
+
+        for (int i = 0; i < 2; i++) {
+            String response = mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode()))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+            ProductDto productResponse = objectMapper.readValue(response, ProductDto.class);
+
+            Assertions.assertEquals(product.getId(), productResponse.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("Get product by barcode if not exists")
+    void getByBarcode_If_Not_Exists() throws Exception {
+        mockMvc.perform(get(endPoint + "/by-barcode/" + 0))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Get product by barcode after barcode update")
+    void getByBarcode_After_Update() throws Exception {
+        Product product = productRepository.save(getProduct());
+        Long oldBarcode = product.getBarcode();
+        mockMvc.perform(get(endPoint + "/by-barcode/" + oldBarcode)).andExpect(status().isOk());
+
+        ProductDto contentProduct = getProductDto();
+        mockMvc.perform(patch(endPoint + "/" + product.getId())
+                        .content(objectMapper.writeValueAsString(contentProduct))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get(endPoint + "/by-barcode/" + oldBarcode))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get(endPoint + "/by-barcode/" + contentProduct.getBarcode()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Get products by barcodes")
+    void getByBarcodes() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+        productRepository.save(getProduct());
+
+        mockMvc.perform(get(endPoint + "/by-barcode/" + first.getBarcode())).andExpect(status().isOk());
+
+        MockHttpServletRequestBuilder request = get(endPoint + "/by-barcode")
+                .param("barcodes", first.getBarcode() + "," + second.getBarcode() + ",0");
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<ProductDto> products = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        Set<Long> expectedIds = Set.of(first.getId(), second.getId());
+        Set<Long> actualIds = products.stream().map(ProductDto::getId).collect(Collectors.toSet());
+
+        Assertions.assertEquals(expectedIds, actualIds);
+    }
+
+    @Test
+    @DisplayName("Add product if barcode already exists")
+    void addProduct_If_Barcode_Exists() throws Exception {
+        Product product = productRepository.save(getProduct());
+        ProductDto contentProduct = getProductDto();
+        contentProduct.setBarcode(product.getBarcode());
+
+        MockHttpServletRequestBuilder request = post(endPoint)
+                .content(objectMapper.writeValueAsString(contentProduct))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        mockMvc.perform(request)
+                .andExpect(status().isConflict());
+    }
+
     @Test
     @DisplayName("Add product")
     void addProduct() throws Exception {
@@ -214,6 +715,29 @@ class ProductControllerTest {
         Assertions.assertEquals(expectedUpdatedProductPrice,actualUpdatedProductPrice);
     }
 
+    @Test
+    @DisplayName("Update product in a single statement")
+    void updateProduct_Statement_Count() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Product product = productRepository.save(getProduct());
+
+        statistics.clear();
+        String response = mockMvc.perform(patch(endPoint + "/" + product.getId())
+                        .content("{\"name\": \"Updated\", \"price\": 66}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + (product.getVersion() + 1) + "\""))
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+
+        ProductDto productDto = objectMapper.readValue(response, ProductDto.class);
+        Assertions.assertEquals("Updated", productDto.getName());
+        Assertions.assertEquals(product.getBarcode(), productDto.getBarcode());
+        Assertions.assertEquals(66L, productDto.getPrice());
+        Assertions.assertEquals("Updated", productRepository.findById(product.getId()).orElseThrow().getName());
+    }
+
     @Test
     @DisplayName("Update product if not exists")
     void updateProduct_If_Not_Exists() throws Exception {
@@ -274,6 +798,149 @@ class ProductControllerTest {
         mockMvc.perform(delete(endPoint)).andExpect(status().isNoContent());
     }
 
+    @Test
+    @DisplayName("Delete product in a single statement")
+    void deleteProduct_Statement_Count() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Product product = productRepository.save(getProduct());
+
+        statistics.clear();
+        mockMvc.perform(delete(endPoint + "/" + product.getId())).andExpect(status().isNoContent());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        mockMvc.perform(delete(endPoint + "/" + product.getId())).andExpect(status().isNotFound());
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+
+        Assertions.assertFalse(productRepository.existsById(product.getId()));
+    }
+
+    @Test
+    @DisplayName("Get product by barcode from the second-level cache")
+    void getByBarcode_Second_Level_Cache() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Product product = productRepository.save(getProduct());
+        mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode())).andExpect(status().isOk());
+        clearApplicationCaches();
+
+        statistics.clear();
+        String response = mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount());
+        Assertions.assertEquals(1, statistics.getNaturalIdCacheHitCount());
+        Assertions.assertEquals(1, statistics.getSecondLevelCacheHitCount());
+        Assertions.assertEquals(product.getId(), objectMapper.readValue(response, ProductDto.class).getId());
+    }
+
+    @Test
+    @DisplayName("Update product invalidates the second-level cache")
+    void updateProduct_Invalidates_Second_Level_Cache() throws Exception {
+        Product product = productRepository.save(getProduct());
+        long newBarcode = nextBarcode++;
+        mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode())).andExpect(status().isOk());
+
+        mockMvc.perform(patch(endPoint + "/" + product.getId())
+                        .content("{\"name\": \"Updated\", \"barcode\": " + newBarcode + "}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        clearApplicationCaches();
+
+        mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode())).andExpect(status().isNotFound());
+        String response = mockMvc.perform(get(endPoint + "/by-barcode/" + newBarcode))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals("Updated", objectMapper.readValue(response, ProductDto.class).getName());
+
+        mockMvc.perform(delete(endPoint + "/" + product.getId())).andExpect(status().isNoContent());
+        clearApplicationCaches();
+
+        mockMvc.perform(get(endPoint + "/by-barcode/" + newBarcode)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Update product evicts only that product from the second-level cache")
+    void updateProduct_Keeps_Other_Products_Cached() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Product updated = productRepository.save(getProduct());
+        Product other = productRepository.save(getProduct());
+        mockMvc.perform(get(endPoint + "/by-barcode/" + updated.getBarcode())).andExpect(status().isOk());
+        mockMvc.perform(get(endPoint + "/by-barcode/" + other.getBarcode())).andExpect(status().isOk());
+
+        mockMvc.perform(patch(endPoint + "/" + updated.getId())
+                        .content("{\"name\": \"Updated\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        clearApplicationCaches();
+
+        statistics.clear();
+        mockMvc.perform(get(endPoint + "/by-barcode/" + other.getBarcode())).andExpect(status().isOk());
+        Assertions.assertEquals(0, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(get(endPoint + "/by-barcode/" + updated.getBarcode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Updated"));
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @DisplayName("Update products in batch reads them from the database, not the second-level cache")
+    void updateProducts_Reads_Database() throws Exception {
+        Product product = productRepository.save(getProduct());
+        mockMvc.perform(get(endPoint + "/by-barcode/" + product.getBarcode())).andExpect(status().isOk());
+        // changed by another instance, this one still has the old version cached
+        jdbcTemplate.update("update products set count_in_stock = 7, version = version + 1 where id = ?", product.getId());
+
+        ProductBatchUpdateDto update = new ProductBatchUpdateDto();
+        update.setId(product.getId());
+        update.setName("Updated");
+        mockMvc.perform(patch(endPoint + ":batch")
+                        .content(objectMapper.writeValueAsString(List.of(update)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Updated"))
+                .andExpect(jsonPath("$[0].countInStock").value(7));
+    }
+
+    @Test
+    @DisplayName("Get unchanged products with the catalog version as the only statement")
+    void getAllProducts_Unchanged_With_One_Statement() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        productRepository.save(getProduct());
+        mockMvc.perform(get(endPoint)).andExpect(status().isOk());
+
+        statistics.clear();
+        mockMvc.perform(get(endPoint)).andExpect(status().isOk());
+
+        // the catalog version and nothing else, the body comes from the rendered catalog
+        Assertions.assertEquals(1, statistics.getPrepareStatementCount());
+
+        productRepository.save(getProduct());
+        String response = mockMvc.perform(get(endPoint))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertEquals(2, objectMapper.readValue(response, new TypeReference<List<ProductDto>>() {
+        }).size());
+    }
+
+    @Test
+    @DisplayName("Get all products sees a change made outside this instance")
+    void getAllProducts_ETag_Moves_On_Foreign_Write() throws Exception {
+        Product product = productRepository.save(getProduct());
+        String eTag = mockMvc.perform(get(endPoint))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // as another instance would, past this instance's caches
+        jdbcTemplate.update("update products set name = 'Renamed', version = version + 1 where id = ?",
+                product.getId());
+
+        mockMvc.perform(get(endPoint).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Renamed"));
+    }
+
     @Test
     @DisplayName("Delete product if not exists")
     void deleteProduct_If_Not_Exists() throws Exception {
@@ -283,10 +950,406 @@ class ProductControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Add products in batch")
+    void addProducts() throws Exception {
+        List<ProductDto> contentProducts = List.of(getProductDto(), getProductDto(), getProductDto());
+
+        MockHttpServletRequestBuilder request = post(endPoint + ":batch")
+                .content(objectMapper.writeValueAsString(contentProducts))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<ProductDto> responseProducts = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        Assertions.assertEquals(3, responseProducts.size());
+        Assertions.assertEquals(3, productRepository.count());
+        responseProducts.forEach(productDto -> Assertions.assertNotNull(productDto.getId()));
+    }
+
+    @Test
+    @DisplayName("Add products in batch if one is invalid")
+    void addProducts_If_One_Is_Invalid() throws Exception {
+        List<ProductDto> contentProducts = List.of(getProductDto(), getInvalidProductDto());
+
+        MockHttpServletRequestBuilder request = post(endPoint + ":batch")
+                .content(objectMapper.writeValueAsString(contentProducts))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<Violation> expectedListViolations = new ArrayList<>(){{
+            add(new Violation("addProducts.products[1].name","size must be between 3 and 255"));
+        }};
+
+        //remove first 14 characters to get a list from string
+        String stringList = response.substring(14);
+        List<Violation> actualStringViolations = objectMapper.readValue(stringList, new TypeReference<>() {
+        });
+
+        Assertions.assertArrayEquals(expectedListViolations.toArray(), actualStringViolations.toArray());
+        Assertions.assertEquals(0, productRepository.count());
+    }
+
+    @Test
+    @DisplayName("Import products from CSV reports rejected rows")
+    void importCsv() throws Exception {
+        Product existing = getProduct();
+        existing.setBarcode(777L);
+        productRepository.save(existing);
+        String csv = "price,name,barcode,countInStock\n"
+                + "100,Milk,701,5\n"
+                + "\n"
+                + "200,\"Bread\",702,7\n"
+                + "300,x,703,1\n"
+                + "400,Cheese,seven,1\n"
+                + "500,Butter,777,1\n";
+
+        MockHttpServletRequestBuilder request = post(endPoint + ":import")
+                .content(csv)
+                .contentType("text/csv");
+
+        MockHttpServletResponse response = mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andReturn().getResponse();
+
+        ProductImportJobDto job = objectMapper.readValue(response.getContentAsString(StandardCharsets.UTF_8),
+                ProductImportJobDto.class);
+
+        Assertions.assertEquals(ProductImportStatus.COMPLETED, job.getStatus());
+        Assertions.assertEquals(5, job.getRowsRead());
+        Assertions.assertEquals(2, job.getRowsImported());
+        Assertions.assertEquals(3, job.getRowsFailed());
+        Assertions.assertEquals("/api/v1/products:import/" + job.getId(), response.getHeader(HttpHeaders.LOCATION));
+        Map<Long, List<Violation>> errors = job.getErrors().stream()
+                .collect(Collectors.toMap(ProductImportErrorDto::getLine, ProductImportErrorDto::getViolations));
+        Assertions.assertEquals(Set.of(5L, 6L, 7L), errors.keySet());
+        Assertions.assertEquals(List.of(new Violation("barcode", "must be a number")), errors.get(6L));
+        Assertions.assertEquals(List.of(new Violation("barcode", "must be unique")), errors.get(7L));
+        Assertions.assertEquals(Set.of(701L, 702L, 777L), productRepository.findAll().stream()
+                .map(Product::getBarcode)
+                .collect(Collectors.toSet()));
+
+        String progress = mockMvc.perform(get(endPoint + ":import/" + job.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+        Assertions.assertEquals(2, objectMapper.readValue(progress, ProductImportJobDto.class).getRowsImported());
+    }
+
+    @Test
+    @DisplayName("Import products from NDJSON")
+    void importNdjson() throws Exception {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 1200; i++) {
+            ndjson.append(objectMapper.writeValueAsString(getProductDto())).append('\n');
+        }
+        ndjson.append("{not json\n");
+
+        MockHttpServletRequestBuilder request = post(endPoint + ":import")
+                .content(ndjson.toString())
+                .contentType("application/x-ndjson");
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        ProductImportJobDto job = objectMapper.readValue(response, ProductImportJobDto.class);
+
+        Assertions.assertEquals(1201, job.getRowsRead());
+        Assertions.assertEquals(1200, job.getRowsImported());
+        Assertions.assertEquals(1201, job.getErrors().get(0).getLine());
+        Assertions.assertEquals(1200, productRepository.count());
+    }
+
+    @Test
+    @DisplayName("Import of CSV without the required columns is rejected")
+    void importCsv_Without_Header() throws Exception {
+        mockMvc.perform(post(endPoint + ":import").content("name,barcode\nMilk,1\n").contentType("text/csv"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Import sends the job location before it reads the rows")
+    void importCsv_Location_Before_Rows() throws Exception {
+        AtomicReference<String> locationBeforeRows = new AtomicReference<>();
+        byte[] csv = "name,barcode,countInStock,price\nMilk,801,5,100\nBread,802,7,200\n".getBytes(StandardCharsets.UTF_8);
+        // hands the body out line by line, the way a slow upload arrives
+        ServletInputStream body = new ServletInputStream() {
+
+            private int pos;
+
+            @Override
+            public int read() {
+                return pos < csv.length ? csv[pos++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (pos >= csv.length) {
+                    return -1;
+                }
+                if (pos > 0 && locationBeforeRows.get() == null) {
+                    HttpServletResponse response = ((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes())
+                            .getResponse();
+                    locationBeforeRows.set(response.isCommitted() ? response.getHeader(HttpHeaders.LOCATION) : "");
+                }
+                int lineEnd = pos;
+                while (csv[lineEnd++] != '\n') {
+                }
+                int read = Math.min(len, lineEnd - pos);
+                System.arraycopy(csv, pos, b, off, read);
+                pos += read;
+                return read;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return pos >= csv.length;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        MockHttpServletResponse response = mockMvc.perform(post(endPoint + ":import")
+                        .contentType("text/csv")
+                        .with(request -> {
+                            MockHttpServletRequest streaming = new MockHttpServletRequest(request.getServletContext(),
+                                    request.getMethod(), request.getRequestURI()) {
+                                @Override
+                                public ServletInputStream getInputStream() {
+                                    return body;
+                                }
+                            };
+                            streaming.setContentType(request.getContentType());
+                            return streaming;
+                        }))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse();
+
+        ProductImportJobDto job = objectMapper.readValue(response.getContentAsString(StandardCharsets.UTF_8),
+                ProductImportJobDto.class);
+        Assertions.assertEquals(2, job.getRowsImported());
+        Assertions.assertEquals("/api/v1/products:import/" + job.getId(), locationBeforeRows.get());
+    }
+
+    @Test
+    @DisplayName("Get unknown import")
+    void getImport_If_Not_Found() throws Exception {
+        mockMvc.perform(get(endPoint + ":import/" + UUID.randomUUID()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Update products in batch")
+    void updateProducts() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+
+        ProductBatchUpdateDto firstUpdate = new ProductBatchUpdateDto();
+        firstUpdate.setId(first.getId());
+        firstUpdate.setName("Updated");
+        ProductBatchUpdateDto secondUpdate = new ProductBatchUpdateDto();
+        secondUpdate.setId(second.getId());
+        secondUpdate.setPrice(66L);
+
+        MockHttpServletRequestBuilder request = patch(endPoint + ":batch")
+                .content(objectMapper.writeValueAsString(List.of(firstUpdate, secondUpdate)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        String response = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<ProductDto> responseProducts = objectMapper.readValue(response, new TypeReference<>() {
+        });
+
+        Assertions.assertEquals("Updated", responseProducts.get(0).getName());
+        Assertions.assertEquals(1L, responseProducts.get(0).getPrice());
+        Assertions.assertEquals("Test", responseProducts.get(1).getName());
+        Assertions.assertEquals(66L, responseProducts.get(1).getPrice());
+    }
+
+    @Test
+    @DisplayName("Delete products in batch")
+    void deleteProducts() throws Exception {
+        Product first = productRepository.save(getProduct());
+        Product second = productRepository.save(getProduct());
+
+        MockHttpServletRequestBuilder request = delete(endPoint + ":batch")
+                .content(objectMapper.writeValueAsString(List.of(first.getId(), second.getId())))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        mockMvc.perform(request).andExpect(status().isNoContent());
+
+        Assertions.assertEquals(0, productRepository.count());
+    }
+
+    @Test
+    @DisplayName("Delete products in batch if one not exists")
+    void deleteProducts_If_One_Not_Exists() throws Exception {
+        Product product = productRepository.save(getProduct());
+
+        MockHttpServletRequestBuilder request = delete(endPoint + ":batch")
+                .content(objectMapper.writeValueAsString(List.of(product.getId(), 0L)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+
+        mockMvc.perform(request).andExpect(status().isNotFound());
+
+        Assertions.assertEquals(1, productRepository.count());
+    }
+
+    @Test
+    @DisplayName("Reserve stock")
+    void reserveStock() throws Exception {
+        Product product = getProduct();
+        product.setCountInStock(5L);
+        product = productRepository.save(product);
+
+        mockMvc.perform(stockRequest(product.getId(), "reserve", 3L))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(stockRequest(product.getId(), "release", 1L))
+                .andExpect(status().isNoContent());
+
+        Product productFromDb = productRepository.findById(product.getId()).orElseThrow();
+
+        Assertions.assertEquals(3L, productFromDb.getCountInStock());
+        Assertions.assertEquals(product.getVersion() + 2, productFromDb.getVersion());
+    }
+
+    @Test
+    @DisplayName("Reserve stock if not enough in stock")
+    void reserveStock_If_Not_Enough() throws Exception {
+        Product product = productRepository.save(getProduct());
+
+        mockMvc.perform(stockRequest(product.getId(), "reserve", 2L))
+                .andExpect(status().isConflict());
+
+        Assertions.assertEquals(1L, productRepository.findById(product.getId()).orElseThrow().getCountInStock());
+    }
+
+    @Test
+    @DisplayName("Reserve stock if product not exists")
+    void reserveStock_If_Not_Exists() throws Exception {
+        mockMvc.perform(stockRequest(0L, "reserve", 1L))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Reserve stock concurrently without overselling")
+    void reserveStock_Concurrently() throws Exception {
+        long stock = 100;
+        int threads = 16;
+        int attemptsPerThread = 20;
+        Product product = getProduct();
+        product.setCountInStock(stock);
+        Long id = productRepository.save(product).getId();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            Callable<Integer> reserve = () -> {
+                int reserved = 0;
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    int status = mockMvc.perform(stockRequest(id, "reserve", 1L)).andReturn().getResponse().getStatus();
+                    if (status == 204) {
+                        reserved++;
+                    } else {
+                        Assertions.assertEquals(409, status);
+                    }
+                }
+                return reserved;
+            };
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(reserve));
+            }
+            int reserved = 0;
+            for (Future<Integer> result : results) {
+                reserved += result.get();
+            }
+
+            Assertions.assertEquals(stock, reserved);
+            Assertions.assertEquals(0L, productRepository.findById(id).orElseThrow().getCountInStock());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Update product with stale version")
+    void updateProduct_With_Stale_Version() throws Exception {
+        Product product = productRepository.save(getProduct());
+        Product stale = productRepository.findById(product.getId()).orElseThrow();
+
+        mockMvc.perform(stockRequest(product.getId(), "reserve", 1L))
+                .andExpect(status().isNoContent());
+        stale.setName("Stale");
+
+        Assertions.assertThrows(ObjectOptimisticLockingFailureException.class, () -> productRepository.save(stale));
+        Assertions.assertEquals("Test", productRepository.findById(product.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    @DisplayName("Expose product metrics for Prometheus")
+    void prometheusMetrics() throws Exception {
+        mockMvc.perform(get(endPoint)).andExpect(status().isOk());
+        mockMvc.perform(get(endPoint + "/0")).andExpect(status().isNotFound());
+        mockMvc.perform(post(endPoint)
+                        .content(objectMapper.writeValueAsString(getInvalidProductDto()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        String response = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertTrue(response.contains("http_server_requests_seconds_bucket{"));
+        Assertions.assertTrue(response.contains("product_service_seconds_bucket{class=\"ru.elseff.demo.web.api.modules.product.service.ProductService\""));
+        Assertions.assertTrue(response.contains("product_service_rows_count{method=\"getAll\""));
+        Assertions.assertTrue(response.contains("product_not_found_total"));
+        Assertions.assertTrue(response.contains("product_validation_failures_total{type=\"argument\""));
+        Assertions.assertTrue(response.contains("hikaricp_connections_active"));
+        Assertions.assertTrue(response.contains("hibernate_statements_total"));
+        Assertions.assertTrue(response.contains("hibernate_second_level_cache_requests_total"));
+    }
+
+    private MockHttpServletRequestBuilder stockRequest(Long id, String operation, Long quantity) throws Exception {
+        return post(endPoint + "/" + id + "/stock/" + operation)
+                .content(objectMapper.writeValueAsString(new StockChangeDto(quantity)))
+                .contentType(MediaType.APPLICATION_JSON)
+                .characterEncoding(StandardCharsets.UTF_8);
+    }
+
+    private Product saveProduct(String name, Long price, Long countInStock) {
+        Product product = getProduct();
+        product.setName(name);
+        product.getPrice().setValue(price);
+        product.setCountInStock(countInStock);
+        return productRepository.save(product);
+    }
+
     private ProductDto getProductDto() {
         ProductDto product = new ProductDto();
         product.setName("Test");
-        product.setBarcode(1L);
+        product.setBarcode(nextBarcode++);
         product.setPrice(10L);
         product.setCountInStock(1L);
         return product;
@@ -301,14 +1364,17 @@ class ProductControllerTest {
         return productDto;
     }
 
+    private void clearApplicationCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        barcodeIndex.clear();
+    }
+
     private Product getProduct() {
         Product product = new Product();
-        product.setId(5L);
         product.setName("Test");
-        product.setBarcode(1L);
+        product.setBarcode(nextBarcode++);
         Price price = new Price();
         price.setValue(1L);
-        price.setProduct(product);
         product.setPrice(price);
         product.setCountInStock(1L);
         return product;
@@ -0,0 +1,117 @@
+package ru.elseff.demo.web.api.modules.product.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Exports a catalog far larger than the heap the {@code low-memory-tests} surefire execution gives
+ * this class, so the export only passes while it streams rows instead of collecting them.
+ */
+@Tag("low-memory")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Testcontainers
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ProductExportMemoryTest {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:latest");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    /**
+     * Seeded with the price history and outbox triggers off, they would only slow the seeding down.
+     */
+    @BeforeAll
+    void seed() {
+        jdbcTemplate.execute("alter table products disable trigger user");
+        jdbcTemplate.update("insert into products (id, name, barcode, count_in_stock, price_value) " +
+                "select id, 'Product', id, id % 50, id % 1000 + 1 from generate_series(1, ?) id", PRODUCTS);
+        jdbcTemplate.execute("alter table products enable trigger user");
+    }
+
+    @Test
+    @DisplayName("Export products as CSV in a small heap")
+    void exportCsv() throws Exception {
+        HttpResponse<InputStream> response = export("csv", false);
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertTrue(response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).isEmpty());
+        try (BufferedReader reader = reader(response.body())) {
+            Assertions.assertEquals("id,name,barcode,countInStock,price", reader.readLine());
+            Assertions.assertEquals("1,Product,1,1,2", reader.readLine());
+            Assertions.assertEquals(PRODUCTS - 1, reader.lines().count());
+        }
+    }
+
+    @Test
+    @DisplayName("Export products as gzipped NDJSON in a small heap")
+    void exportNdjson_Gzip() throws Exception {
+        HttpResponse<InputStream> response = export("ndjson", true);
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("gzip", response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElseThrow());
+        try (BufferedReader reader = reader(new GZIPInputStream(response.body()))) {
+            JsonNode first = objectMapper.readTree(reader.readLine());
+            Assertions.assertEquals(1, first.get("id").asLong());
+            Assertions.assertEquals(2, first.get("price").asLong());
+            Assertions.assertEquals(PRODUCTS - 1, reader.lines().count());
+        }
+    }
+
+    private HttpResponse<InputStream> export(String format, boolean gzip) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://localhost:" + port + "/api/v1/products/export?format=" + format));
+        if (gzip) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        }
+        return httpClient.send(request.GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    private static BufferedReader reader(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+}
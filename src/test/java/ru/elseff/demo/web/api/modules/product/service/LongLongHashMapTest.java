@@ -0,0 +1,56 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+class LongLongHashMapTest {
+
+    @Test
+    @DisplayName("Behaves like a HashMap under random puts and removes")
+    void randomOperations() {
+        LongLongHashMap map = new LongLongHashMap(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000) - 100;
+            if (random.nextInt(3) == 0) {
+                map.remove(key);
+                expected.remove(key);
+            } else {
+                long value = random.nextLong();
+                map.put(key, value);
+                expected.put(key, value);
+            }
+        }
+
+        Assertions.assertEquals(expected.size(), map.size());
+        for (long key = -100; key < 4_900; key++) {
+            Long expectedValue = expected.get(key);
+            Assertions.assertEquals(expectedValue == null ? LongLongHashMap.NO_VALUE : expectedValue, map.get(key));
+        }
+    }
+
+    @Test
+    @DisplayName("Remove values")
+    void removeValues() {
+        LongLongHashMap map = new LongLongHashMap(16);
+        for (long key = 0; key < 100; key++) {
+            map.put(key, key % 10);
+        }
+
+        map.removeValues(Set.of(0L, 5L));
+
+        Assertions.assertEquals(80, map.size());
+        for (long key = 0; key < 100; key++) {
+            long expectedValue = key % 10 == 0 || key % 10 == 5 ? LongLongHashMap.NO_VALUE : key % 10;
+            Assertions.assertEquals(expectedValue, map.get(key));
+        }
+    }
+}
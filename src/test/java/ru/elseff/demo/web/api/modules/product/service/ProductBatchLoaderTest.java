@@ -0,0 +1,126 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ProductBatchLoaderTest {
+
+    private static final int THREADS = 8;
+
+    @InjectMocks
+    private ProductBatchLoader productBatchLoader;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(productBatchLoader, "enabled", true);
+        ReflectionTestUtils.setField(productBatchLoader, "windowMicros", TimeUnit.SECONDS.toMicros(5));
+        ReflectionTestUtils.setField(productBatchLoader, "maxBatchSize", THREADS - 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Lookups arriving while a query runs are read in one query")
+    @SuppressWarnings("unchecked")
+    void load_Coalesces_Concurrent_Lookups() throws Exception {
+        CountDownLatch firstQueryRunning = new CountDownLatch(1);
+        CountDownLatch releaseFirstQuery = new CountDownLatch(1);
+        given(productRepository.findProjectedById(0L)).willAnswer(invocation -> {
+            firstQueryRunning.countDown();
+            releaseFirstQuery.await(5, TimeUnit.SECONDS);
+            return Optional.of(getProductDto(0L));
+        });
+        given(productRepository.findProjectedByIdIn(anyCollection())).willAnswer(invocation ->
+                ((Collection<Long>) invocation.getArgument(0)).stream()
+                        .filter(id -> id != 3L)
+                        .map(this::getProductDto)
+                        .collect(Collectors.toList()));
+
+        Future<Optional<ProductDto>> first = executor.submit(() -> productBatchLoader.load(0L));
+        Assertions.assertTrue(firstQueryRunning.await(5, TimeUnit.SECONDS));
+
+        List<Future<Optional<ProductDto>>> others = new ArrayList<>();
+        for (long id = 1; id < THREADS; id++) {
+            long requestedId = id;
+            others.add(executor.submit(() -> productBatchLoader.load(requestedId)));
+        }
+        for (int i = 0; i < others.size(); i++) {
+            long id = i + 1;
+            Optional<ProductDto> product = others.get(i).get(5, TimeUnit.SECONDS);
+            Assertions.assertEquals(id == 3L ? Optional.empty() : Optional.of(id), product.map(ProductDto::getId));
+        }
+        releaseFirstQuery.countDown();
+        Assertions.assertEquals(0L, first.get(5, TimeUnit.SECONDS).orElseThrow().getId());
+
+        ArgumentCaptor<Collection<Long>> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(productRepository, times(1)).findProjectedById(0L);
+        verify(productRepository, times(1)).findProjectedByIdIn(ids.capture());
+        Assertions.assertEquals(Set.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), Set.copyOf(ids.getValue()));
+        Assertions.assertEquals(2, meterRegistry.summary("product.loader.batch.size").count());
+    }
+
+    @Test
+    @DisplayName("A failed query fails every lookup of the batch")
+    void load_Propagates_Failure() {
+        given(productRepository.findProjectedById(1L)).willThrow(new QueryTimeoutException("timeout"));
+
+        Assertions.assertThrows(QueryTimeoutException.class, () -> productBatchLoader.load(1L));
+    }
+
+    @Test
+    @DisplayName("Disabled loader reads every id on its own")
+    void load_Disabled() {
+        ReflectionTestUtils.setField(productBatchLoader, "enabled", false);
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto(1L)));
+
+        Assertions.assertEquals(1L, productBatchLoader.load(1L).orElseThrow().getId());
+        Assertions.assertEquals(0, meterRegistry.summary("product.loader.batch.size").count());
+    }
+
+    private ProductDto getProductDto(Long id) {
+        return new ProductDto(id, "Test", id, 1L, 1L);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.elseff.demo.DemoApplication;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+import java.io.IOException;
+
+import static ru.elseff.demo.config.CacheConfig.PRODUCTS_CACHE;
+
+/**
+ * Two instances of the application on one embedded database, each with its own product cache.
+ */
+class ProductCacheInvalidatorTest {
+
+    private static EmbeddedPostgres postgres;
+
+    private static ConfigurableApplicationContext first;
+
+    private static ConfigurableApplicationContext second;
+
+    @BeforeAll
+    static void start() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        first = startInstance();
+        second = startInstance();
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        second.close();
+        first.close();
+        postgres.close();
+    }
+
+    @Test
+    @DisplayName("A product changed through one instance is evicted from the cache of the other")
+    void poll_Evicts_Foreign_Change() throws Exception {
+        ProductService firstService = first.getBean(ProductService.class);
+        ProductService secondService = second.getBean(ProductService.class);
+        ProductDto product = new ProductDto();
+        product.setName("Milk");
+        product.setBarcode(1L);
+        product.setPrice(10L);
+        product.setCountInStock(1L);
+        Long id = secondService.addProduct(product).getId();
+        // the creation comes through the feed as well, the product is cached once it has passed
+        awaitSequenced();
+        Thread.sleep(200);
+        Assertions.assertEquals("Milk", firstService.getSpecific(id).getName());
+        Assertions.assertNotNull(first.getBean(CacheManager.class).getCache(PRODUCTS_CACHE).get(id));
+
+        ProductUpdateDto update = new ProductUpdateDto();
+        update.setName("Kefir");
+        secondService.updateProduct(id, update);
+
+        // far below the cache's time to live
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!"Kefir".equals(firstService.getSpecific(id).getName()) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Assertions.assertEquals("Kefir", firstService.getSpecific(id).getName());
+    }
+
+    private static void awaitSequenced() throws InterruptedException {
+        JdbcTemplate jdbcTemplate = first.getBean(JdbcTemplate.class);
+        while (jdbcTemplate.queryForObject("select count(*) from product_events where seq is null", Long.class) > 0) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--app.product-events.poll-interval=50");
+    }
+}
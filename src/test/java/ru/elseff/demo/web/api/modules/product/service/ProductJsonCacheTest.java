@@ -0,0 +1,75 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ProductJsonCacheTest {
+
+    @InjectMocks
+    private ProductJsonCache productJsonCache;
+
+    @Spy
+    private ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(productJsonCache, "enabled", true);
+        ReflectionTestUtils.setField(productJsonCache, "maximumSize", 100L);
+        productJsonCache.init();
+    }
+
+    @Test
+    @DisplayName("Rendered product is what Jackson writes, once per version")
+    void render() throws Exception {
+        ProductDto productDto = getProductDto(1L, 0L);
+
+        byte[] json = productJsonCache.render(productDto);
+
+        Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(productDto), json);
+        Assertions.assertSame(json, productJsonCache.render(getProductDto(1L, 0L)));
+
+        ProductDto updated = getProductDto(1L, 1L);
+        updated.setName("Updated");
+        Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(updated), productJsonCache.render(updated));
+    }
+
+    @Test
+    @DisplayName("Rendered catalog is what Jackson writes, read once per catalog version")
+    void renderCatalog() throws Exception {
+        List<ProductDto> products = List.of(getProductDto(1L, 0L), getProductDto(2L, 3L));
+        AtomicInteger reads = new AtomicInteger();
+
+        byte[] json = productJsonCache.renderCatalog("1", () -> {
+            reads.incrementAndGet();
+            return products;
+        });
+
+        Assertions.assertArrayEquals(objectMapper.writeValueAsBytes(products), json);
+        Assertions.assertSame(json, productJsonCache.renderCatalog("1", List::of));
+        Assertions.assertEquals(1, reads.get());
+        Assertions.assertEquals("[]", new String(productJsonCache.renderCatalog("2", List::of)));
+    }
+
+    private ProductDto getProductDto(Long id, Long version) {
+        return new ProductDto(id, "Test", id, 1L, 1L, version, Instant.EPOCH);
+    }
+}
@@ -0,0 +1,186 @@
+package ru.elseff.demo.web.api.modules.product.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.web.server.ResponseStatusException;
+import ru.elseff.demo.exception.ProductNotFoundException;
+import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.persistense.routing.ReadYourWrites;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.*;
+import static ru.elseff.demo.config.CacheConfig.PRODUCTS_CACHE;
+
+@SpringJUnitConfig(ProductServiceCacheTest.Config.class)
+class ProductServiceCacheTest {
+
+    // not a @Configuration, so the application's component scan never picks it up
+    @EnableCaching
+    static class Config {
+        @Bean
+        CacheManager cacheManager() {
+            CaffeineCacheManager cacheManager = new CaffeineCacheManager(PRODUCTS_CACHE);
+            cacheManager.setCacheSpecification("maximumSize=100,expireAfterWrite=10m,recordStats");
+            return cacheManager;
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        ProductService productService() {
+            return new ProductService();
+        }
+
+        @Bean
+        ProductBatchLoader productBatchLoader() {
+            return new ProductBatchLoader();
+        }
+    }
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private ProductRepository productRepository;
+
+    @MockBean
+    private ProductMapper productMapper;
+
+    @MockBean
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private BarcodeIndex barcodeIndex;
+
+    @MockBean
+    private ProductJsonCache productJsonCache;
+
+    @MockBean
+    private ReadYourWrites readYourWrites;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(PRODUCTS_CACHE).clear();
+    }
+
+    @Test
+    @DisplayName("Concurrent misses for the same product load it once")
+    void getSpecific_Concurrent_Misses_Load_Once() throws Exception {
+        int threads = 16;
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        given(productRepository.findProjectedById(1L)).willAnswer(invocation -> {
+            loading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(getProductDto());
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<ProductDto>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> productService.getSpecific(1L)));
+            }
+            Assertions.assertTrue(loading.await(5, TimeUnit.SECONDS));
+            // give the other threads time to pile up behind the in-flight load
+            Thread.sleep(200);
+            release.countDown();
+
+            for (Future<ProductDto> future : futures) {
+                Assertions.assertEquals("Test", future.get(5, TimeUnit.SECONDS).getName());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        verify(productRepository, times(1)).findProjectedById(1L);
+    }
+
+    @Test
+    @DisplayName("Repeated reads are served from the cache")
+    void getSpecific_Repeated_Reads_Hit_Cache() {
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto()));
+
+        for (int i = 0; i < 10; i++) {
+            productService.getSpecific(1L);
+        }
+
+        verify(productRepository, times(1)).findProjectedById(1L);
+    }
+
+    @Test
+    @DisplayName("An unknown product is answered with the 404 itself and is not cached")
+    void getSpecific_Unknown_Not_Cached() {
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.empty());
+
+        for (int i = 0; i < 2; i++) {
+            ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                    () -> productService.getSpecific(1L));
+            Assertions.assertSame(ProductNotFoundException.class, exception.getClass());
+            Assertions.assertEquals(0, exception.getStackTrace().length);
+        }
+
+        Assertions.assertNull(cacheManager.getCache(PRODUCTS_CACHE).get(1L));
+        verify(productRepository, times(2)).findProjectedById(1L);
+    }
+
+    @Test
+    @DisplayName("Update product evicts the cached product")
+    void updateProduct_Evicts_Cache() {
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto()));
+        given(productRepository.patch(eq(1L), isNull(), any(ProductUpdateDto.class)))
+                .willReturn(Optional.of(getProductDto()));
+
+        productService.getSpecific(1L);
+        productService.updateProduct(1L, new ProductUpdateDto("Updated", null, null, null));
+        productService.getSpecific(1L);
+
+        verify(productRepository, times(2)).findProjectedById(1L);
+    }
+
+    @Test
+    @DisplayName("Delete product evicts the cached product")
+    void deleteProduct_Evicts_Cache() {
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto()));
+        given(productRepository.deleteReturningBarcode(1L, null)).willReturn(Optional.of(1L));
+
+        productService.getSpecific(1L);
+        productService.deleteProduct(1L);
+
+        Assertions.assertNull(cacheManager.getCache(PRODUCTS_CACHE).get(1L));
+    }
+
+    private ProductDto getProductDto() {
+        return new ProductDto(1L, "Test", 1L, 1L, 1L);
+    }
+}
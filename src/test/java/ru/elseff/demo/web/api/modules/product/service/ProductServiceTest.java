@@ -1,5 +1,7 @@
 package ru.elseff.demo.web.api.modules.product.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -7,19 +9,29 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.modelmapper.ModelMapper;
+import org.mockito.Spy;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import ru.elseff.demo.persistense.Price;
 import ru.elseff.demo.persistense.Product;
 import ru.elseff.demo.persistense.dao.ProductRepository;
+import ru.elseff.demo.persistense.routing.ReadYourWrites;
+import ru.elseff.demo.web.api.modules.product.dto.ProductBatchUpdateDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
 import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapper;
+import ru.elseff.demo.web.api.modules.product.mapper.ProductMapperImpl;
 
+import javax.persistence.EntityManager;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.mockito.BDDMockito.given;
-import static org.mockito.BDDMockito.willDoNothing;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.*;
 
 class ProductServiceTest {
@@ -30,39 +42,80 @@ class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Spy
+    private ProductMapper productMapper = new ProductMapperImpl();
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private BarcodeIndex barcodeIndex;
+
+    @Mock
+    private ProductBatchLoader productBatchLoader;
+
     @Mock
-    private ModelMapper modelMapper;
+    private ProductJsonCache productJsonCache;
+
+    @Mock
+    private ReadYourWrites readYourWrites;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(productService, "batchSize", 2);
     }
 
     @Test
     @DisplayName("Get all products")
     void getAll() {
-        given(productRepository.findAll()).willReturn(List.of(
-                new Product(),
-                new Product(),
-                new Product()
+        given(productRepository.findAllProjected()).willReturn(List.of(
+                new ProductDto(),
+                new ProductDto(),
+                new ProductDto()
         ));
 
-        List<Product> products = productService.getAll();
+        List<ProductDto> products = productService.getAll();
 
         int expectedListSize = 3;
         int actualListSize = products.size();
 
         Assertions.assertEquals(expectedListSize, actualListSize);
-        verify(productRepository, times(1)).findAll();
+        Assertions.assertEquals(3.0, meterRegistry.summary("product.service.rows", "method", "getAll").totalAmount());
+        verify(productRepository, times(1)).findAllProjected();
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Get products page")
+    void getPage() {
+        given(productRepository.findProjectedPage(anyLong(), any(Pageable.class))).willReturn(List.of(
+                new ProductDto(),
+                new ProductDto()
+        ));
+
+        List<ProductDto> products = productService.getPage(null, 2);
+
+        int expectedListSize = 2;
+        int actualListSize = products.size();
+
+        Assertions.assertEquals(expectedListSize, actualListSize);
+        verify(productRepository, times(1)).findProjectedPage(0L, Pageable.ofSize(2));
         verifyNoMoreInteractions(productRepository);
     }
 
     @Test
     @DisplayName("Get specific product")
     void getSpecific() {
-        given(productRepository.findById(anyLong())).willReturn(java.util.Optional.of(getProduct()));
+        given(productBatchLoader.load(anyLong())).willReturn(Optional.of(getProductDto()));
 
-        Product product = productService.getSpecific(anyLong());
+        ProductDto product = productService.getSpecific(anyLong());
 
         String expectedProductName = "Test";
         String actualProductName = product.getName();
@@ -70,14 +123,14 @@ class ProductServiceTest {
         Assertions.assertNotNull(product);
         Assertions.assertEquals(expectedProductName, actualProductName);
 
-        verify(productRepository, times(1)).findById(anyLong());
-        verifyNoMoreInteractions(productRepository);
+        verify(productBatchLoader, times(1)).load(anyLong());
+        verifyNoInteractions(productRepository);
     }
 
     @Test
     @DisplayName("Get specific product is not exists")
     void getSpecific_If_Not_Exists() {
-        given(productRepository.findById(anyLong())).willReturn(Optional.empty());
+        given(productBatchLoader.load(anyLong())).willReturn(Optional.empty());
 
         ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
                 () -> productService.getSpecific(1L));
@@ -87,17 +140,77 @@ class ProductServiceTest {
 
         Assertions.assertEquals(expectedExceptionMessage, actualExceptionMessage);
 
-        verify(productRepository, times(1)).findById(anyLong());
+        verify(productBatchLoader, times(1)).load(anyLong());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Get products by ids in the order asked for")
+    void getByIds() {
+        ProductDto first = getProductDto();
+        ProductDto second = getProductDto();
+        second.setId(2L);
+        given(productRepository.findProjectedByIdIn(anyCollection())).willReturn(List.of(first, second));
+
+        List<ProductDto> products = productService.getByIds(List.of(2L, 3L, 1L));
+
+        Assertions.assertEquals(List.of(2L, 1L), products.stream().map(ProductDto::getId).collect(Collectors.toList()));
+        verify(productRepository, times(1)).findProjectedByIdIn(anyCollection());
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Get product by barcode from the index")
+    void getByBarcode_Index_Hit() {
+        given(barcodeIndex.find(1L)).willReturn(1L);
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto()));
+
+        ProductDto product = productService.getByBarcode(1L);
+
+        Assertions.assertEquals(1L, product.getId());
+        verify(productRepository, times(1)).findProjectedById(1L);
         verifyNoMoreInteractions(productRepository);
     }
 
+    @Test
+    @DisplayName("Get product by barcode if index entry is stale")
+    void getByBarcode_Index_Stale() {
+        ProductDto productWithOtherBarcode = getProductDto();
+        productWithOtherBarcode.setBarcode(2L);
+        ProductDto product = getProductDto();
+        product.setId(3L);
+        given(barcodeIndex.find(1L)).willReturn(1L);
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(productWithOtherBarcode));
+        given(productRepository.findByNaturalId(1L)).willReturn(Optional.of(product));
+
+        ProductDto actualProduct = productService.getByBarcode(1L);
+
+        Assertions.assertEquals(3L, actualProduct.getId());
+        verify(barcodeIndex, times(1)).remove(1L);
+        verify(barcodeIndex, times(1)).put(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("Get product by barcode if not exists")
+    void getByBarcode_If_Not_Exists() {
+        given(barcodeIndex.find(anyLong())).willReturn(BarcodeIndex.NOT_FOUND);
+        given(productRepository.findByNaturalId(anyLong())).willReturn(Optional.empty());
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> productService.getByBarcode(1L));
+
+        String expectedExceptionMessage = "Could not find product with barcode 1";
+        String actualExceptionMessage = exception.getReason();
+
+        Assertions.assertEquals(expectedExceptionMessage, actualExceptionMessage);
+    }
+
     @Test
     @DisplayName("Add product")
     void addProduct() {
         given(productRepository.save(any(Product.class))).willReturn(getProduct());
-        given(modelMapper.map(any(), any())).willReturn(getProduct());
 
-        Product product = productService.addProduct(new ProductDto());
+        Product product = productService.addProduct(getProductDto());
 
         String expectedProductName = "Test";
         String actualProductName = product.getName();
@@ -106,70 +219,155 @@ class ProductServiceTest {
         Assertions.assertEquals(expectedProductName, actualProductName);
 
         verify(productRepository, times(1)).save(any(Product.class));
-        verify(modelMapper, times(1)).map(any(), any());
+        verify(productMapper, times(1)).toEntity(any(ProductDto.class));
+        verifyNoMoreInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Add products in batch")
+    void addProducts() {
+        willAnswer(invocation -> {
+            invocation.<Product>getArgument(0).setId(1L);
+            return null;
+        }).given(entityManager).persist(any(Product.class));
+
+        List<Product> products = productService.addProducts(List.of(getProductDto(), getProductDto(), getProductDto()));
+
+        int expectedListSize = 3;
+        int actualListSize = products.size();
+
+        Assertions.assertEquals(expectedListSize, actualListSize);
+
+        verify(entityManager, times(3)).persist(any(Product.class));
+        verify(entityManager, times(1)).flush();
+        verify(entityManager, times(1)).clear();
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    @DisplayName("Update products in batch if one not exists")
+    void updateProducts_If_One_Not_Exists() {
+        Product product = getProduct();
+        product.setId(1L);
+        given(productRepository.findAllById(anyCollection())).willReturn(List.of(product));
+
+        ProductBatchUpdateDto first = new ProductBatchUpdateDto();
+        first.setId(1L);
+        ProductBatchUpdateDto second = new ProductBatchUpdateDto();
+        second.setId(2L);
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> productService.updateProducts(List.of(first, second)));
+
+        String expectedExceptionMessage = "Could not find products with ids [2]";
+        String actualExceptionMessage = exception.getReason();
+
+        Assertions.assertEquals(expectedExceptionMessage, actualExceptionMessage);
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    @DisplayName("Delete products in batch")
+    void deleteProducts() {
+        given(productRepository.findExistingIds(anyCollection())).willAnswer(invocation -> invocation.getArgument(0));
+
+        productService.deleteProducts(List.of(1L, 2L, 3L, 3L));
+
+        verify(productRepository, times(2)).findExistingIds(anyCollection());
+        verify(productRepository, times(2)).deleteByIdIn(anyCollection());
         verifyNoMoreInteractions(productRepository);
-        verifyNoMoreInteractions(modelMapper);
     }
 
     @Test
     @DisplayName("Update product")
     void updateProduct() {
-        given(productRepository.findById(anyLong())).willReturn(Optional.of(getProduct()));
-        Product savedProduct = getProduct();
-        savedProduct.setName("Updated");
-        savedProduct.getPrice().setValue(99L);
-        given(productRepository.save(any(Product.class))).willReturn(savedProduct);
+        ProductDto updated = getProductDto();
+        updated.setName("Updated");
+        given(productRepository.patch(eq(1L), isNull(), any(ProductUpdateDto.class))).willReturn(Optional.of(updated));
 
-        Product product = productService.updateProduct(anyLong(), new ProductUpdateDto());
+        ProductDto productDto = productService.updateProduct(1L, new ProductUpdateDto("Updated", null, null, null));
 
-        String expectedProductName = "Updated";
-        String actualProductName = product.getName();
-        Long expectedProductPrice = 99L;
-        Long actualProductPrice = product.getPrice().getValue();
+        Assertions.assertEquals("Updated", productDto.getName());
 
-        Assertions.assertNotNull(product);
-        Assertions.assertEquals(expectedProductName, actualProductName);
-        Assertions.assertEquals(expectedProductPrice,actualProductPrice);
+        verify(barcodeIndex).put(updated.getBarcode(), updated.getId());
+        verify(productRepository, times(1)).patch(eq(1L), isNull(), any(ProductUpdateDto.class));
+        verifyNoMoreInteractions(productRepository);
+    }
 
-        verify(productRepository, times(1)).findById(anyLong());
-        verify(productRepository, times(1)).save(any(Product.class));
+    @Test
+    @DisplayName("Update product without changes only reads it")
+    void updateProduct_Without_Changes() {
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(getProductDto()));
+
+        ProductDto productDto = productService.updateProduct(1L, new ProductUpdateDto());
+
+        Assertions.assertEquals("Test", productDto.getName());
+
+        verify(productRepository, times(1)).findProjectedById(1L);
         verifyNoMoreInteractions(productRepository);
     }
 
+    @Test
+    @DisplayName("Update product with stale version")
+    void updateProduct_With_Stale_Version() {
+        ProductDto current = getProductDto();
+        current.setVersion(3L);
+        given(productRepository.patch(eq(1L), eq(2L), any(ProductUpdateDto.class))).willReturn(Optional.empty());
+        given(productRepository.findProjectedById(1L)).willReturn(Optional.of(current));
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> productService.updateProduct(1L, 2L, new ProductUpdateDto("Updated", null, null, null)));
+
+        Assertions.assertEquals(HttpStatus.PRECONDITION_FAILED, exception.getStatus());
+        Assertions.assertEquals("Product with id 1 is at version 3", exception.getReason());
+    }
+
+    @Test
+    @DisplayName("Reserve stock if not enough in stock")
+    void reserveStock_If_Not_Enough() {
+        given(productRepository.reserveStock(1L, 5L)).willReturn(0);
+        given(productRepository.existsById(1L)).willReturn(true);
+
+        ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
+                () -> productService.reserveStock(1L, 5L));
+
+        Assertions.assertEquals("Not enough stock for product with id 1", exception.getReason());
+    }
+
     @Test
     @DisplayName("Update product if not exists")
     void updateProduct_If_Not_Exists() {
-        given(productRepository.findById(anyLong())).willReturn(Optional.empty());
+        given(productRepository.patch(eq(1L), isNull(), any(ProductUpdateDto.class))).willReturn(Optional.empty());
 
         ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
-                () -> productService.updateProduct(1L, new ProductUpdateDto()));
+                () -> productService.updateProduct(1L, new ProductUpdateDto("Updated", null, null, null)));
 
         String expectedExceptionMessage = "Could not find product with id 1";
         String actualExceptionMessage = exception.getReason();
 
         Assertions.assertEquals(expectedExceptionMessage, actualExceptionMessage);
+        Assertions.assertEquals(1.0, meterRegistry.counter("product.not.found").count());
 
-        verify(productRepository, times(1)).findById(anyLong());
+        verify(productRepository, times(1)).patch(eq(1L), isNull(), any(ProductUpdateDto.class));
         verifyNoMoreInteractions(productRepository);
     }
 
     @Test
     @DisplayName("Delete product")
     void deleteProduct() {
-        given(productRepository.findById(anyLong())).willReturn(Optional.of(getProduct()));
-        willDoNothing().given(productRepository).delete(any(Product.class));
+        given(productRepository.deleteReturningBarcode(1L, null)).willReturn(Optional.of(7L));
 
-        productService.deleteProduct(anyLong());
+        productService.deleteProduct(1L);
 
-        verify(productRepository, times(1)).findById(anyLong());
-        verify(productRepository, times(1)).delete(any(Product.class));
+        verify(barcodeIndex).remove(7L);
+        verify(productRepository, times(1)).deleteReturningBarcode(1L, null);
         verifyNoMoreInteractions(productRepository);
     }
 
     @Test
     @DisplayName("Delete product is not exists")
     void deleteProduct_If_Not_Exists() {
-        given(productRepository.findById(anyLong())).willReturn(Optional.empty());
+        given(productRepository.deleteReturningBarcode(1L, null)).willReturn(Optional.empty());
 
         ResponseStatusException exception = Assertions.assertThrows(ResponseStatusException.class,
                 () -> productService.deleteProduct(1L));
@@ -179,17 +377,21 @@ class ProductServiceTest {
 
         Assertions.assertEquals(expectedExceptionMessage, actualExceptionMessage);
 
-        verify(productRepository, times(1)).findById(anyLong());
+        verify(productRepository, times(1)).deleteReturningBarcode(1L, null);
         verifyNoMoreInteractions(productRepository);
     }
 
+    private ProductDto getProductDto() {
+        return new ProductDto(1L, "Test", 1L, 1L, 1L);
+    }
+
     private Product getProduct() {
         Product product = new Product();
+        product.setId(1L);
         product.setName("Test");
         product.setBarcode(1L);
         Price price = new Price();
         price.setValue(1L);
-        price.setProduct(product);
         product.setPrice(price);
         product.setCountInStock(1L);
         return product;
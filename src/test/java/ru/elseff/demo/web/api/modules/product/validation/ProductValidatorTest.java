@@ -0,0 +1,71 @@
+package ru.elseff.demo.web.api.modules.product.validation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.elseff.demo.exception.ProductValidationException;
+import ru.elseff.demo.exception.handling.dto.Violation;
+import ru.elseff.demo.web.api.modules.product.dto.ProductDto;
+import ru.elseff.demo.web.api.modules.product.dto.ProductUpdateDto;
+
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class ProductValidatorTest {
+
+    private static final String[] NAMES = {null, "", "Ab", "Abc", "abc", "Ab1", "A1", "ABC", "Milk", "Ab c", "A".repeat(255), "A".repeat(256)};
+
+    private static final Long[] NUMBERS = {null, -1L, 0L, 1L};
+
+    private final ProductValidator productValidator = new ProductValidator();
+
+    private final Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Test
+    @DisplayName("Reports the same violations as the ProductDto constraints")
+    void validateProductDto() {
+        for (String name : NAMES) {
+            for (Long number : NUMBERS) {
+                for (Long id : new Long[]{null, 1L}) {
+                    ProductDto productDto = new ProductDto(id, name, number, 1L, number);
+                    Assertions.assertEquals(beanValidation(productDto), new HashSet<>(productValidator.validate(productDto)),
+                            productDto::toString);
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reports the same violations as the ProductUpdateDto constraints")
+    void validateProductUpdateDto() {
+        for (String name : NAMES) {
+            for (Long number : NUMBERS) {
+                ProductUpdateDto productUpdateDto = new ProductUpdateDto(name, number, number, 1L);
+                Assertions.assertEquals(beanValidation(productUpdateDto), new HashSet<>(productValidator.validate(productUpdateDto)),
+                        () -> name + " " + number);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Throw on invalid product")
+    void requireValid() {
+        ProductDto productDto = new ProductDto(null, "Ab", 1L, 1L, 1L);
+
+        ProductValidationException exception = Assertions.assertThrows(ProductValidationException.class,
+                () -> productValidator.requireValid(productDto));
+
+        Assertions.assertEquals(List.of(new Violation("name", "size must be between 3 and 255")), exception.getViolations());
+        Assertions.assertEquals(0, exception.getStackTrace().length);
+    }
+
+    private <T> Set<Violation> beanValidation(T object) {
+        return validator.validate(object).stream()
+                .map(violation -> new Violation(violation.getPropertyPath().toString(), violation.getMessage()))
+                .collect(Collectors.toSet());
+    }
+}
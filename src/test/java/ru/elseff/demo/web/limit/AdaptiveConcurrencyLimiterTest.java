@@ -0,0 +1,57 @@
+package ru.elseff.demo.web.limit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    @DisplayName("Reject requests over the limit")
+    void limit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0, 10);
+
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertTrue(limiter.tryAcquire());
+        Assertions.assertFalse(limiter.tryAcquire());
+
+        limiter.release();
+        Assertions.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Grow while the limit is reached at a steady latency, shrink once latency rises")
+    void adapt() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 100, 2.0, 8);
+
+        window(limiter, 4, 1_000_000);
+        Assertions.assertEquals(6, limiter.getLimit());
+
+        window(limiter, 6, 1_000_000);
+        Assertions.assertEquals(8, limiter.getLimit());
+
+        window(limiter, 8, 8_000_000);
+        Assertions.assertEquals(4, limiter.getLimit());
+
+        window(limiter, 1, 1_000_000);
+        Assertions.assertEquals(4, limiter.getLimit());
+    }
+
+    /**
+     * Completes a window of requests arriving {@code concurrency} at a time.
+     */
+    private static void window(AdaptiveConcurrencyLimiter limiter, int concurrency, long latencyNanos) {
+        int completed = 0;
+        while (completed < 8) {
+            for (int i = 0; i < concurrency; i++) {
+                Assertions.assertTrue(limiter.tryAcquire());
+            }
+            for (int i = 0; i < concurrency && completed < 8; i++, completed++) {
+                limiter.release(latencyNanos);
+            }
+        }
+        while (limiter.getInflight() > 0) {
+            limiter.release();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.elseff.demo.web.limit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+class RateLimitInterceptorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final RateLimitInterceptor interceptor = new RateLimitInterceptor();
+
+    private HandlerMethod handler;
+
+    @BeforeEach
+    void setUp() throws NoSuchMethodException {
+        handler = new HandlerMethod(this, RateLimitInterceptorTest.class.getDeclaredMethod("setUp"));
+        ReflectionTestUtils.setField(interceptor, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(interceptor, "rateLimitEnabled", true);
+        ReflectionTestUtils.setField(interceptor, "clientRate", 0.001);
+        ReflectionTestUtils.setField(interceptor, "clientBurst", 2L);
+        ReflectionTestUtils.setField(interceptor, "maxClients", 100L);
+        ReflectionTestUtils.setField(interceptor, "globalRate", 0.001);
+        ReflectionTestUtils.setField(interceptor, "globalBurst", 5L);
+        ReflectionTestUtils.setField(interceptor, "concurrencyLimitEnabled", true);
+        ReflectionTestUtils.setField(interceptor, "initialLimit", 1);
+        ReflectionTestUtils.setField(interceptor, "minLimit", 1);
+        ReflectionTestUtils.setField(interceptor, "maxLimit", 10);
+        ReflectionTestUtils.setField(interceptor, "tolerance", 2.0);
+        ReflectionTestUtils.setField(interceptor, "window", 100);
+        interceptor.init();
+    }
+
+    @Test
+    @DisplayName("Answer 429 to a client over its rate, keep serving the others")
+    void clientRate() throws Exception {
+        Assertions.assertTrue(handle("192.0.2.1").isEmpty());
+        Assertions.assertTrue(handle("192.0.2.1").isEmpty());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        Assertions.assertFalse(interceptor.preHandle(request("192.0.2.1"), rejected, handler));
+        Assertions.assertEquals(429, rejected.getStatus());
+        Assertions.assertEquals("1", rejected.getHeader(HttpHeaders.RETRY_AFTER));
+
+        Assertions.assertTrue(handle("192.0.2.2").isEmpty());
+        Assertions.assertEquals(1, meterRegistry.get("product.api.rejected").tag("reason", "client").counter().count());
+    }
+
+    @Test
+    @DisplayName("Answer 429 to everybody over the global rate")
+    void globalRate() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(handle("192.0.2." + i).isEmpty());
+        }
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        Assertions.assertFalse(interceptor.preHandle(request("192.0.2.5"), rejected, handler));
+        Assertions.assertEquals(429, rejected.getStatus());
+    }
+
+    @Test
+    @DisplayName("Answer 503 while the endpoint is at its concurrency limit")
+    void concurrencyLimit() throws Exception {
+        MockHttpServletRequest first = request("192.0.2.1");
+        Assertions.assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), handler));
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        Assertions.assertFalse(interceptor.preHandle(request("192.0.2.2"), rejected, handler));
+        Assertions.assertEquals(503, rejected.getStatus());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), handler, null);
+        Assertions.assertTrue(interceptor.preHandle(request("192.0.2.2"), new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    @DisplayName("A client cannot pick a fresh bucket with a header of its own")
+    void clientRate_Ignores_Client_Header() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletRequest request = request("192.0.2.1");
+            request.addHeader("X-Client-Id", "client-" + i);
+            Assertions.assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), handler));
+            interceptor.afterCompletion(request, new MockHttpServletResponse(), handler, null);
+        }
+
+        MockHttpServletRequest request = request("192.0.2.1");
+        request.addHeader("X-Client-Id", "client-2");
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        Assertions.assertFalse(interceptor.preHandle(request, rejected, handler));
+        Assertions.assertEquals(429, rejected.getStatus());
+    }
+
+    @Test
+    @DisplayName("A long poll gives its slot back while it waits")
+    void concurrencyLimit_Long_Poll_Released_While_Waiting() throws Exception {
+        HandlerMethod longPoll = new HandlerMethod(this, RateLimitInterceptorTest.class.getDeclaredMethod("longPoll"));
+        MockHttpServletRequest first = request("192.0.2.1");
+        Assertions.assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), longPoll));
+
+        interceptor.afterConcurrentHandlingStarted(first, new MockHttpServletResponse(), longPoll);
+
+        Assertions.assertTrue(interceptor.preHandle(request("192.0.2.2"), new MockHttpServletResponse(), longPoll));
+    }
+
+    @Test
+    @DisplayName("A streamed response keeps its slot until it completes")
+    void concurrencyLimit_Stream_Holds_Slot() throws Exception {
+        HandlerMethod stream = new HandlerMethod(this, RateLimitInterceptorTest.class.getDeclaredMethod("stream"));
+        MockHttpServletRequest first = request("192.0.2.1");
+        Assertions.assertTrue(interceptor.preHandle(first, new MockHttpServletResponse(), stream));
+
+        interceptor.afterConcurrentHandlingStarted(first, new MockHttpServletResponse(), stream);
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        Assertions.assertFalse(interceptor.preHandle(request("192.0.2.2"), rejected, stream));
+        Assertions.assertEquals(503, rejected.getStatus());
+
+        interceptor.afterCompletion(first, new MockHttpServletResponse(), stream, null);
+        Assertions.assertTrue(interceptor.preHandle(request("192.0.2.2"), new MockHttpServletResponse(), stream));
+    }
+
+    private DeferredResult<String> longPoll() {
+        return new DeferredResult<>();
+    }
+
+    private StreamingResponseBody stream() {
+        return outputStream -> {
+        };
+    }
+
+    /**
+     * Runs a request through the interceptor, returns the rejection body or an empty string.
+     */
+    private String handle(String remoteAddress) throws Exception {
+        MockHttpServletRequest request = request(remoteAddress);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        if (interceptor.preHandle(request, response, handler)) {
+            interceptor.afterCompletion(request, response, handler, null);
+        }
+        return response.getContentAsString();
+    }
+
+    private static MockHttpServletRequest request(String remoteAddress) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/products");
+        request.setRemoteAddr(remoteAddress);
+        return request;
+    }
+}
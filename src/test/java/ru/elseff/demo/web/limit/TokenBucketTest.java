@@ -0,0 +1,41 @@
+package ru.elseff.demo.web.limit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+class TokenBucketTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    @Test
+    @DisplayName("Allow a burst of the capacity, then the refill rate")
+    void burstThenRate() {
+        TokenBucket bucket = new TokenBucket(10, 5, now::get);
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertTrue(bucket.tryAcquire());
+        }
+        Assertions.assertFalse(bucket.tryAcquire());
+
+        now.addAndGet(100_000_000L);
+        Assertions.assertTrue(bucket.tryAcquire());
+        Assertions.assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    @DisplayName("Refill no more than the capacity while idle")
+    void idleRefill() {
+        TokenBucket bucket = new TokenBucket(10, 3, now::get);
+
+        now.addAndGet(60_000_000_000L);
+
+        int acquired = 0;
+        while (bucket.tryAcquire()) {
+            acquired++;
+        }
+        Assertions.assertEquals(3, acquired);
+    }
+}